@@ -0,0 +1,77 @@
+package memAllocator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Add/remove throughput of one memory shared by several threads.
+ * A single arena behaves like DynamicMemory behind one global lock.
+ * Change the thread count with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConcurrentMemoryBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	@Param({"BEST_FIT", "FIRST_FIT", "WORST_FIT", "NEXT_FIT"})
+	public Algorithm algorithm;
+
+	@Param({"1000000"})
+	public long memorySize;
+
+	@Param({"1", "4"})
+	public int arenas;
+
+	@Param({"UNIFORM", "SMALL", "BIMODAL"})
+	public JobSizes jobSizes;
+
+	private ConcurrentDynamicMemory memory;
+	private int[] sizes;
+
+	/**
+	 * Position in the shared size sample, one per thread
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Setup
+	public void setUp() {
+		JobSizes.silenceOutput();
+		sizes = jobSizes.sample((int) (memorySize / 1000), SAMPLES);
+		memory = new ConcurrentDynamicMemory(memorySize, 0, arenas);
+		memory.setVerbose(false);
+	}
+
+	@Benchmark
+	public ConcurrentDynamicMemory addRemove(Cursor cursor) {
+		Job job = new Job(sizes[cursor.next]);
+		cursor.next = (cursor.next + 1) % SAMPLES;
+		memory.addJob(algorithm, job);
+		memory.removeJob(job.getId());
+		return memory;
+	}
+}
@@ -0,0 +1,85 @@
+package memAllocator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Steady state add/remove cost of the dynamic memory modules.
+ * Memory is fragmented before measuring by placing jobs and then removing half of them at random.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicMemoryBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	@Param({"BEST_FIT", "FIRST_FIT", "WORST_FIT", "NEXT_FIT", "BUDDY", "TLSF"})
+	public Algorithm algorithm;
+
+	@Param({"10000", "1000000"})
+	public long memorySize;
+
+	//Number of jobs placed before half of them are removed again
+	@Param({"100", "10000"})
+	public int fragments;
+
+	@Param({"UNIFORM", "SMALL", "BIMODAL"})
+	public JobSizes jobSizes;
+
+	//Primitive partition table instead of Partition objects, ignored for buddy and TLSF memory
+	@Param({"false", "true"})
+	public boolean table;
+
+	private MemoryModule memory;
+	private int[] sizes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		JobSizes.silenceOutput();
+		int maxSize = (int) Math.max(1, memorySize / fragments);
+		sizes = jobSizes.sample(maxSize, SAMPLES);
+		memory = MemoryTester.dynamicMemory(algorithm, memorySize, 0, table);
+		memory.setVerbose(false);
+		for (int i = 0; i < fragments; i++) {
+			memory.addJob(algorithm, nextJob());
+		}
+		for (int i = 0; i < fragments / 2 && !memory.isEmpty(); i++) {
+			memory.removeJob();
+		}
+	}
+
+	private Job nextJob() {
+		Job job = new Job(sizes[next]);
+		next = (next + 1) % SAMPLES;
+		return job;
+	}
+
+	@Benchmark
+	public MemoryModule addRemove() {
+		memory.addJob(algorithm, nextJob());
+		if(!memory.isEmpty()){
+			memory.removeJob();
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,94 @@
+package memAllocator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Steady state add/remove cost of the fixed memory module.
+ * The memory is split into the given number of partitions of varying size,
+ * and half of them are busy before measuring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedMemoryBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	//Buddy blocks only exist in dynamic memory
+	@Param({"BEST_FIT", "FIRST_FIT", "WORST_FIT", "NEXT_FIT"})
+	public Algorithm algorithm;
+
+	@Param({"10000", "1000000"})
+	public long memorySize;
+
+	//Number of fixed partitions
+	@Param({"100", "10000"})
+	public int fragments;
+
+	@Param({"UNIFORM", "SMALL", "BIMODAL"})
+	public JobSizes jobSizes;
+
+	private MemoryModule memory;
+	private int[] sizes;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		JobSizes.silenceOutput();
+		int maxSize = (int) Math.max(1, memorySize / fragments);
+		//Partition sizes follow the job distribution so every job has somewhere to go
+		int[] partitionSizes = jobSizes.sample(maxSize, fragments);
+		partitionSizes[0] = maxSize;
+		File config = File.createTempFile("FixedPartitionConfig", ".txt");
+		config.deleteOnExit();
+		PrintWriter writer = new PrintWriter(config);
+		for(int size : partitionSizes){
+			writer.println(size);
+		}
+		writer.close();
+
+		sizes = jobSizes.sample(maxSize, SAMPLES);
+		memory = new FixedMemory(memorySize, 0, config.getPath());
+		memory.setVerbose(false);
+		for (int i = 0; i < fragments / 2; i++) {
+			memory.addJob(algorithm, nextJob());
+		}
+	}
+
+	private Job nextJob() {
+		Job job = new Job(sizes[next]);
+		next = (next + 1) % SAMPLES;
+		return job;
+	}
+
+	@Benchmark
+	public MemoryModule addRemove() {
+		memory.addJob(algorithm, nextJob());
+		if(!memory.isEmpty()){
+			memory.removeJob();
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,61 @@
+package memAllocator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Job size distributions used by the benchmarks.
+ * Sizes are drawn up front from a fixed seed so every run replays the same sequence.
+ */
+public enum JobSizes {
+	//Every size between 1 and the maximum is equally likely
+	UNIFORM,
+	//Mostly small jobs with a long tail of large ones
+	SMALL,
+	//Half small jobs, half close to the maximum
+	BIMODAL;
+
+	static final long SEED = 42;
+
+	/**
+	 * @param maxSize largest job size
+	 * @param count how many sizes to draw
+	 * @return the job sizes
+	 */
+	public int[] sample(int maxSize, int count) {
+		Random random = new Random(SEED);
+		int[] sizes = new int[count];
+		for (int i = 0; i < count; i++) {
+			long size;
+			if(this == UNIFORM){
+				size = 1 + random.nextInt(maxSize);
+			}
+			else if(this == SMALL){
+				size = 1 + (long) (-Math.log(1 - random.nextDouble()) * maxSize / 8);
+			}
+			else {
+				size = random.nextBoolean() ? 1 + random.nextInt(Math.max(1, maxSize / 10)) : maxSize - random.nextInt(Math.max(1, maxSize / 10));
+			}
+			sizes[i] = (int) Math.min(Math.max(size, 1), maxSize);
+		}
+		return sizes;
+	}
+
+	/**
+	 * The memory modules print every operation, benchmarks throw that output away
+	 */
+	static void silenceOutput() {
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+}
@@ -0,0 +1,83 @@
+package memAllocator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Add/remove cost of the slab front end against plain dynamic memory, mostly with small jobs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlabMemoryBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	@Param({"BEST_FIT", "FIRST_FIT"})
+	public Algorithm algorithm;
+
+	@Param({"1000000"})
+	public long memorySize;
+
+	//Number of jobs placed before half of them are removed again
+	@Param({"10000"})
+	public int fragments;
+
+	@Param({"SMALL", "UNIFORM"})
+	public JobSizes jobSizes;
+
+	@Param({"false", "true"})
+	public boolean slab;
+
+	private MemoryModule memory;
+	private int[] sizes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		JobSizes.silenceOutput();
+		int maxSize = (int) Math.max(1, memorySize / fragments);
+		sizes = jobSizes.sample(maxSize, SAMPLES);
+		memory = slab ? new SlabMemory(memorySize, 0) : new DynamicMemory(memorySize, 0);
+		memory.setVerbose(false);
+		for (int i = 0; i < fragments; i++) {
+			memory.addJob(algorithm, nextJob());
+		}
+		for (int i = 0; i < fragments / 2 && !memory.isEmpty(); i++) {
+			memory.removeJob();
+		}
+	}
+
+	private Job nextJob() {
+		Job job = new Job(sizes[next]);
+		next = (next + 1) % SAMPLES;
+		return job;
+	}
+
+	@Benchmark
+	public MemoryModule addRemove() {
+		memory.addJob(algorithm, nextJob());
+		if(!memory.isEmpty()){
+			memory.removeJob();
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,360 @@
+package memAllocator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Buddy system memory module.
+ * Every block is a power of two in size and keeps a buddy of the same size next to it.
+ * Free blocks are kept in one address ordered list per order (block size 2^order),
+ * jobs are rounded up to the next order and the difference is internal fragmentation.
+ */
+public class BuddyMemory implements MemoryModule{
+
+	private long totalSize;
+	private TreeMap<Long, Partition> partitions;
+	private WaitQueue waitJobs;
+	private long address;
+	private HashMap<Integer, Partition> jobMap;
+	private LiveJobSet liveJobs;
+	//Free blocks for each order, indexed by order
+	private List<TreeMap<Long, Partition>> orderList;
+	private int maxOrder;
+	private long usedSize;
+	//Sum of the space lost by rounding jobs up to their block size
+	private long fragmentation;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
+
+	/**
+	 * Buddy Memory module constructor
+	 * @param size
+	 * @param memAddress
+	 */
+	public BuddyMemory(long size, long memAddress) {
+		totalSize = size;
+		this.address = memAddress;
+		partitions = new TreeMap<Long, Partition>();
+		waitJobs = new WaitQueue();
+		jobMap = new HashMap<Integer, Partition>();
+		liveJobs = new LiveJobSet();
+		maxOrder = 63 - Long.numberOfLeadingZeros(size);
+		orderList = new ArrayList<TreeMap<Long, Partition>>();
+		for (int i = 0; i <= maxOrder; i++) {
+			orderList.add(new TreeMap<Long, Partition>());
+		}
+		initPartitions();
+	}
+
+	/**
+	 * Splits the memory into the largest power of two blocks that fit, biggest first.
+	 * Keeping them in decreasing order keeps every block aligned to its own size,
+	 * so buddy addresses never cross into a neighbouring root block.
+	 */
+	private void initPartitions() {
+		long currentMemAddress = address;
+		long remaining = totalSize;
+		while(remaining > 0){
+			long blockSize = Long.highestOneBit(remaining);
+			Partition p = new Partition(blockSize, currentMemAddress);
+			partitions.put(currentMemAddress, p);
+			orderList.get(orderOf(blockSize)).put(currentMemAddress, p);
+			currentMemAddress += blockSize;
+			remaining -= blockSize;
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return the smallest order whose block can hold the size
+	 */
+	private static int orderOf(long size) {
+		if(size <= 1){
+			return 0;
+		}
+		return 64 - Long.numberOfLeadingZeros(size - 1);
+	}
+
+	/**
+	 * @param p
+	 * @return address of the block's buddy, found by flipping the bit of its own size
+	 */
+	private long buddyAddress(Partition p) {
+		return address + ((p.getMemAddress() - address) ^ p.getSize());
+	}
+
+	public void printAll(){
+		printFreeList();
+		printSnapShot();
+		printWaitQueue();
+	}
+
+	/**
+	 * Print the free blocks of every order
+	 */
+	public void printFreeList(){
+		System.out.println();
+		String leftAlignFormat = "| %-5d | %-18d | %-13d |%n";
+		System.out.println("+Buddy Free List");
+		System.out.format("+-------+--------------------+---------------+%n");
+		System.out.format("| Order | Beggining Address  | Block Size    |%n");
+		System.out.format("+-------+--------------------+---------------+%n");
+		for (int order = 0; order <= maxOrder; order++) {
+			for(Partition p : orderList.get(order).values()){
+				System.out.format(leftAlignFormat, order, p.getMemAddress(), p.getSize());
+			}
+		}
+		System.out.format("+-------+--------------------+---------------+%n");
+	}
+
+	/**
+	 * Print a snapshot of the memory at the current time.
+	 * Allocated blocks report the internal fragmentation left by rounding the job up.
+	 */
+	public void printSnapShot(){
+		System.out.println();
+		String leftAlignFormat = "| %-20s | %-5s %n";
+		String endFormat = " %28s ";
+		System.out.println("+Snapshot Buddy Partition");
+		System.out.format("+----------------------+%n");
+		System.out.format("| Memory Stack         |%n");
+		System.out.format("+----------------------+%n");
+		Iterator<Entry<Long, Partition>> it = partitions.entrySet().iterator();
+		while(it.hasNext()){
+			Partition p = it.next().getValue();
+			if(p.isFree()){
+				long breaks = p.getSize()/10;
+				System.out.format(leftAlignFormat, "", p.getMemAddress() + "k");
+				for (int i = 0; i < breaks-1; i++) {
+					System.out.format(leftAlignFormat, "","");
+				}
+				System.out.format("+----------------------+%n");
+			}
+			else{
+				long jobBreaks = p.getCurrentJob().getSize()/10;
+				System.out.format(leftAlignFormat, "Job " + p.getCurrentJob().getId() + " = " + p.getCurrentJob().getSize() + "k", p.getMemAddress() + "k");
+				for (int i = 0; i < jobBreaks - 1; i++) {
+					System.out.format(leftAlignFormat, "","");
+				}
+				if(p.getFragmentation() > 0){
+					System.out.format("+......................+%n");
+					System.out.format(leftAlignFormat, " has " + p.getFragmentation() + "k frag", "");
+				}
+				System.out.format("+----------------------+%n");
+			}
+		}
+		System.out.format(endFormat, totalSize + "k");
+	}
+
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Buddy Partition", totalSize);
+		for(Partition p : partitions.values()){
+			snapshot.block(p.getMemAddress(), p.getSize(), p.isFree() ? null : p.getCurrentJob());
+		}
+		return snapshot.waiting(waitJobs).build();
+	}
+
+	/**
+	 * Print out the queue of waiting jobs
+	 */
+	public void printWaitQueue(){
+		if(waitJobs.isEmpty()){
+			System.out.println();
+			System.out.println("No jobs currently waiting.");
+		} else {
+			System.out.println();
+			String leftAlignFormat = "| %-20s |%n";
+			System.out.println("+Job Waiting Queue");
+			System.out.format("+----------------------+%n");
+			System.out.format("| Job                  |%n");
+			System.out.format("+----------------------+%n");
+			for(Job j : waitJobs){
+				System.out.format(leftAlignFormat, "Job " + j.getId() + " - " + (j.getSize()) + "k");
+			}
+			System.out.format("+----------------------+%n");
+		}
+	}
+
+	/**
+	 * Buddy placement does not depend on the fit algorithm, every job goes to the
+	 * lowest addressed block of the smallest order that can hold it.
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		if(verbose){
+			System.out.println("\n***ADD JOB " + newJob.getId());
+		}
+		if(!allocate(newJob)){
+			waitJobs.add(newJob);
+			waits++;
+		}
+	}
+
+	/**
+	 * Takes the smallest free block that can hold the job and splits it in half
+	 * until it is the job's order, freeing the upper buddy at each step.
+	 * @param newJob
+	 * @return if the job was placed
+	 */
+	private boolean allocate(Job newJob) {
+		int order = orderOf(newJob.getSize());
+		int freeOrder = order;
+		while(freeOrder <= maxOrder && orderList.get(freeOrder).isEmpty()){
+			freeOrder++;
+		}
+		if(freeOrder > maxOrder){
+			return false;
+		}
+		Partition block = orderList.get(freeOrder).pollFirstEntry().getValue();
+		while(freeOrder > order){
+			freeOrder--;
+			long half = 1L << freeOrder;
+			Partition buddy = new Partition(half, block.getMemAddress() + half);
+			block.setSize(half);
+			partitions.put(buddy.getMemAddress(), buddy);
+			orderList.get(freeOrder).put(buddy.getMemAddress(), buddy);
+		}
+		block.setCurrentJob(newJob);
+		jobMap.put(newJob.getId(), block);
+		liveJobs.add(newJob.getId(), 0);
+		usedSize += block.getSize();
+		fragmentation += block.getFragmentation();
+		allocations++;
+		newJob.placed();
+		return true;
+	}
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = liveJobs.randomId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Simulates a job completing
+	 * Removes it from the active job map, sets the partitions job to null,
+	 * merges the block with its buddies and then checks the Wait Queue
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		if(verbose){
+			System.out.println("\n***REMOVE JOB " + id);
+		}
+		Partition p = jobMap.remove(id);
+		if(p == null){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+			}
+			return false;
+		}
+		liveJobs.remove(id);
+		usedSize -= p.getSize();
+		fragmentation -= p.getFragmentation();
+		p.setCurrentJob(null);
+		deallocate(p);
+		checkWaitQueue();
+		return true;
+	}
+
+	/**
+	 * Merges the freed block with its buddy for as long as the buddy is free as a whole block.
+	 * A buddy that is split or busy is not in its order's free list, so one lookup per order is enough.
+	 * @param p
+	 */
+	private void deallocate(Partition p) {
+		int order = orderOf(p.getSize());
+		while(order < maxOrder){
+			Partition buddy = orderList.get(order).remove(buddyAddress(p));
+			if(buddy == null){
+				break;
+			}
+			Partition lower = buddy.getMemAddress() < p.getMemAddress() ? buddy : p;
+			Partition upper = lower == p ? buddy : p;
+			partitions.remove(upper.getMemAddress());
+			lower.setSize(lower.getSize() * 2);
+			p = lower;
+			order++;
+		}
+		orderList.get(order).put(p.getMemAddress(), p);
+	}
+
+	/**
+	 * called after memory is deallocated
+	 * Admits every waiting job that now fits the largest free block, largest job first
+	 */
+	private void checkWaitQueue() {
+		Job j;
+		while((j = waitJobs.pollFloor(getLargestFreeBlock())) != null){
+			allocate(j);
+		}
+	}
+
+	/**
+	 * @return size of the largest free block, 0 if memory is full
+	 */
+	public long getLargestFreeBlock() {
+		for (int order = maxOrder; order >= 0; order--) {
+			if(!orderList.get(order).isEmpty()){
+				return 1L << order;
+			}
+		}
+		return 0;
+	}
+
+	public boolean isEmpty(){
+		return jobMap.isEmpty();
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		return usedSize;
+	}
+
+	/**
+	 * @return internal fragmentation of all allocated blocks
+	 */
+	public long getFragmentation() {
+		return fragmentation;
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+}
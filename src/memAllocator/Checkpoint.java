@@ -0,0 +1,198 @@
+package memAllocator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * File format shared by the memory checkpoints, and the bulk loading their restore uses.
+ * A checkpoint starts with a magic number, a version and the kind of memory, all big endian,
+ * followed by the memory's own fields. Partitions are written in address order, so their
+ * addresses are implied by their sizes and restore can build every TreeMap from sorted runs.
+ */
+final class Checkpoint {
+
+	static final int MAGIC = 0x4D434B50;
+	static final int VERSION = 1;
+	static final byte FIXED = 0;
+	static final byte DYNAMIC = 1;
+	//Job id written for a free partition
+	static final int FREE = -1;
+
+	private Checkpoint() {
+	}
+
+	/**
+	 * @param fileName overwritten if it exists
+	 * @param kind
+	 * @return a buffered stream positioned after the header
+	 */
+	static DataOutputStream create(String fileName, byte kind) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(kind);
+		return out;
+	}
+
+	/**
+	 * @param fileName
+	 * @param kind the kind of memory the caller restores
+	 * @return a buffered stream positioned after the header
+	 * @throws IOException if the file is not a checkpoint of this version and kind
+	 */
+	static DataInputStream open(String fileName, byte kind) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readByte() != kind){
+			in.close();
+			throw new IOException(fileName + " is not a version " + VERSION + " checkpoint of this memory");
+		}
+		return in;
+	}
+
+	/**
+	 * Writes the job's id and size, or FREE for no job
+	 * @param out
+	 * @param job
+	 */
+	static void writeJob(DataOutputStream out, Job job) throws IOException {
+		out.writeInt(job == null ? FREE : job.getId());
+		out.writeInt(job == null ? 0 : (int) job.getSize());
+	}
+
+	/**
+	 * Reads a job written by writeJob, keeping its id.
+	 * New jobs are numbered after every restored one so ids stay unique.
+	 * @param in
+	 * @return the job, or null for FREE
+	 */
+	static Job readJob(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		int size = in.readInt();
+		if(id == FREE){
+			return null;
+		}
+		Job job = new Job(size);
+		job.setId(id);
+		Job.nextId.accumulateAndGet(id, Math::max);
+		return job;
+	}
+
+	/**
+	 * Builds the map in linear time. TreeMap copies a SortedMap with buildFromSorted,
+	 * which links a balanced tree straight from the ascending entries instead of putting them one at a time.
+	 * @param keys in ascending order, without duplicates
+	 * @param values
+	 * @return a TreeMap of the keys and values
+	 */
+	static <K, V> TreeMap<K, V> sortedTreeMap(List<K> keys, List<V> values) {
+		return new TreeMap<K, V>(new SortedEntries<K, V>(keys, values));
+	}
+
+	/**
+	 * Read only SortedMap over two parallel lists, keys in natural order.
+	 * The TreeMap copy constructor only walks entrySet, the views are cut from the lists by binary search.
+	 */
+	private static class SortedEntries<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+		private final List<K> keys;
+		private final List<V> values;
+
+		private SortedEntries(List<K> keys, List<V> values) {
+			this.keys = keys;
+			this.values = values;
+		}
+
+		@Override
+		public int size() {
+			return keys.size();
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public int size() {
+					return keys.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new Iterator<Map.Entry<K, V>>() {
+						private int next;
+
+						public boolean hasNext() {
+							return next < keys.size();
+						}
+
+						public Map.Entry<K, V> next() {
+							Map.Entry<K, V> entry = new SimpleImmutableEntry<K, V>(keys.get(next), values.get(next));
+							next++;
+							return entry;
+						}
+					};
+				}
+			};
+		}
+
+		public Comparator<? super K> comparator() {
+			return null;
+		}
+
+		public SortedMap<K, V> subMap(K fromKey, K toKey) {
+			return view(ceilingIndex(fromKey), Math.max(ceilingIndex(fromKey), ceilingIndex(toKey)));
+		}
+
+		public SortedMap<K, V> headMap(K toKey) {
+			return view(0, ceilingIndex(toKey));
+		}
+
+		public SortedMap<K, V> tailMap(K fromKey) {
+			return view(ceilingIndex(fromKey), keys.size());
+		}
+
+		public K firstKey() {
+			if(keys.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			return keys.get(0);
+		}
+
+		public K lastKey() {
+			if(keys.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			return keys.get(keys.size() - 1);
+		}
+
+		private SortedMap<K, V> view(int from, int to) {
+			return new SortedEntries<K, V>(keys.subList(from, to), values.subList(from, to));
+		}
+
+		/**
+		 * @param key
+		 * @return index of the first key not below the given one
+		 */
+		@SuppressWarnings("unchecked")
+		private int ceilingIndex(K key) {
+			int index = Collections.binarySearch((List<? extends Comparable<? super K>>) keys, key);
+			return index < 0 ? -index - 1 : index;
+		}
+	}
+}
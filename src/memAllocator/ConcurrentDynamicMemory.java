@@ -0,0 +1,380 @@
+package memAllocator;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Thread safe dynamic memory module.
+ * The address space is split into arenas, each a DynamicMemory with its own lock.
+ * Every thread is pinned to a home arena and only spills into the others when its own is full,
+ * so threads working in different arenas never contend. Jobs are freed in the arena that owns them.
+ * A job no arena can take waits in one shared overflow queue, which every removal checks against
+ * the arena it just freed space in, so a waiting job can be placed in any arena.
+ */
+public class ConcurrentDynamicMemory implements MemoryModule{
+
+	private long totalSize;
+	private Arena[] arenas;
+	//Arena that placed each job
+	private ConcurrentHashMap<Integer, Arena> owners;
+	private AtomicInteger nextArena;
+	private ThreadLocal<Arena> homeArena;
+	//Jobs that fit no arena, guarded by overflowLock, which is always taken before an arena's lock
+	private WaitQueue overflow;
+	private ReentrantLock overflowLock;
+	private int waits;
+	//Jobs queued or about to be, removals skip the overflow lock while this is 0
+	private AtomicInteger overflowWaiting;
+
+	/**
+	 * One slice of the address space and the lock guarding it
+	 */
+	private static class Arena {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final DynamicMemory memory;
+		private final int index;
+
+		private Arena(int index, long size, long memAddress) {
+			this.index = index;
+			this.memory = new DynamicMemory(size, memAddress);
+		}
+	}
+
+	/**
+	 * Creates one arena per available processor
+	 * @param size
+	 * @param memAddress
+	 */
+	public ConcurrentDynamicMemory(long size, long memAddress) {
+		this(size, memAddress, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Arenas of any size, a job larger than every arena never leaves the overflow queue
+	 * @param size
+	 * @param memAddress
+	 * @param arenaCount
+	 */
+	public ConcurrentDynamicMemory(long size, long memAddress, int arenaCount) {
+		this(size, memAddress, arenaCount, 0);
+	}
+
+	/**
+	 * Concurrent Dynamic Memory module constructor
+	 * @param size
+	 * @param memAddress
+	 * @param arenaCount number of independently locked slices, the last one takes the remainder
+	 * @param maxJobSize fewer arenas are made if needed so each can hold a job this large, 0 for no limit
+	 */
+	public ConcurrentDynamicMemory(long size, long memAddress, int arenaCount, long maxJobSize) {
+		totalSize = size;
+		if(maxJobSize > 0){
+			arenaCount = (int) Math.min(arenaCount, size / maxJobSize);
+		}
+		arenaCount = (int) Math.max(1, Math.min(arenaCount, size));
+		arenas = new Arena[arenaCount];
+		long arenaSize = size / arenaCount;
+		long currentMemAddress = memAddress;
+		for (int i = 0; i < arenaCount; i++) {
+			long thisSize = i == arenaCount - 1 ? size - arenaSize * i : arenaSize;
+			arenas[i] = new Arena(i, thisSize, currentMemAddress);
+			currentMemAddress += thisSize;
+		}
+		owners = new ConcurrentHashMap<Integer, Arena>();
+		overflow = new WaitQueue();
+		overflowLock = new ReentrantLock();
+		overflowWaiting = new AtomicInteger();
+		nextArena = new AtomicInteger();
+		homeArena = new ThreadLocal<Arena>() {
+			@Override
+			protected Arena initialValue() {
+				return arenas[Math.floorMod(nextArena.getAndIncrement(), arenas.length)];
+			}
+		};
+	}
+
+	/**
+	 * Places the job in the calling thread's arena.
+	 * If it has no room the other arenas are tried without waiting for their locks.
+	 * If none of them can take the job, every arena is checked again under the overflow lock,
+	 * waiting for each arena's lock this time, and the job is only queued if it still fits nowhere.
+	 * A removal that frees space meanwhile waits for the overflow lock, so it sees the queued job.
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		Arena home = homeArena.get();
+		if(tryAdd(home, algorithmID, newJob, true)){
+			return;
+		}
+		for (int i = 1; i < arenas.length; i++) {
+			Arena other = arenas[(home.index + i) % arenas.length];
+			if(tryAdd(other, algorithmID, newJob, false)){
+				return;
+			}
+		}
+		overflowWaiting.incrementAndGet();
+		overflowLock.lock();
+		try {
+			for (int i = 0; i < arenas.length; i++) {
+				Arena arena = arenas[(home.index + i) % arenas.length];
+				if(tryAdd(arena, algorithmID, newJob, true)){
+					overflowWaiting.decrementAndGet();
+					return;
+				}
+			}
+			overflow.add(newJob);
+			waits++;
+		} finally {
+			overflowLock.unlock();
+		}
+	}
+
+	/**
+	 * @param arena
+	 * @param algorithmID
+	 * @param newJob
+	 * @param wait block on the arena's lock, otherwise give up if it is held
+	 * @return if the arena had a block large enough and the job was placed
+	 */
+	private boolean tryAdd(Arena arena, Algorithm algorithmID, Job newJob, boolean wait) {
+		if(wait){
+			arena.lock.lock();
+		}
+		else if(!arena.lock.tryLock()){
+			return false;
+		}
+		try {
+			if(arena.memory.getLargestFreeBlock() < newJob.getSize()){
+				return false;
+			}
+			owners.put(newJob.getId(), arena);
+			arena.memory.addJob(algorithmID, newJob);
+			return true;
+		} finally {
+			arena.lock.unlock();
+		}
+	}
+
+	/**
+	 * Places the waiting jobs that now fit the arena, largest first using First Fit,
+	 * the same way a DynamicMemory admits its own wait queue
+	 * @param arena that just freed space, its lock must not be held
+	 */
+	private void checkOverflow(Arena arena) {
+		if(overflowWaiting.get() == 0){
+			return;
+		}
+		overflowLock.lock();
+		try {
+			arena.lock.lock();
+			try {
+				Job j;
+				while((j = overflow.pollFloor(arena.memory.getLargestFreeBlock())) != null){
+					owners.put(j.getId(), arena);
+					arena.memory.addJob(Algorithm.FIRST_FIT, j);
+					overflowWaiting.decrementAndGet();
+				}
+			} finally {
+				arena.lock.unlock();
+			}
+		} finally {
+			overflowLock.unlock();
+		}
+	}
+
+	/**
+	 * Simulates a random job completing, looking in the calling thread's arena first
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		Arena home = homeArena.get();
+		for (int i = 0; i < arenas.length; i++) {
+			Arena arena = arenas[(home.index + i) % arenas.length];
+			int id = -1;
+			arena.lock.lock();
+			try {
+				if(!arena.memory.isEmpty()){
+					id = arena.memory.randomJobId();
+					arena.memory.removeJob(id);
+					owners.remove(id, arena);
+				}
+			} finally {
+				arena.lock.unlock();
+			}
+			if(id != -1){
+				checkOverflow(arena);
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Frees the job in the arena that owns it
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		Arena arena = owners.get(id);
+		if(arena == null){
+			return false;
+		}
+		boolean removed;
+		arena.lock.lock();
+		try {
+			removed = arena.memory.removeJob(id);
+			if(removed){
+				owners.remove(id, arena);
+			}
+		} finally {
+			arena.lock.unlock();
+		}
+		if(removed){
+			checkOverflow(arena);
+		}
+		return removed;
+	}
+
+	public void printAll(){
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				System.out.println();
+				System.out.println("+Arena " + (arena.index + 1));
+				arena.memory.printAll();
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		overflowLock.lock();
+		try {
+			System.out.println();
+			System.out.println("+Overflow Queue");
+			for(Job j : overflow){
+				System.out.println("Job " + j.getId() + " - " + j.getSize() + "k");
+			}
+		} finally {
+			overflowLock.unlock();
+		}
+	}
+
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Concurrent Dynamic Partition", totalSize);
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				snapshot.add(arena.memory.snapshot());
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		overflowLock.lock();
+		try {
+			snapshot.waiting(overflow);
+		} finally {
+			overflowLock.unlock();
+		}
+		return snapshot.build();
+	}
+
+	public boolean isEmpty(){
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				if(!arena.memory.isEmpty()){
+					return false;
+				}
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		return true;
+	}
+
+	public void setVerbose(boolean verbose) {
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				arena.memory.setVerbose(verbose);
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+	}
+
+	public void setRandom(Random random) {
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				arena.memory.setRandom(random);
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		long used = 0;
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				used += arena.memory.getUsedSize();
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * @return free memory outside the largest free block of each arena
+	 */
+	public long getFragmentation() {
+		long fragmentation = 0;
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				fragmentation += arena.memory.getFragmentation();
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		return fragmentation;
+	}
+
+	public int getAllocations() {
+		int allocations = 0;
+		for(Arena arena : arenas){
+			arena.lock.lock();
+			try {
+				allocations += arena.memory.getAllocations();
+			} finally {
+				arena.lock.unlock();
+			}
+		}
+		return allocations;
+	}
+
+	/**
+	 * @return jobs that had to wait in the overflow queue
+	 */
+	public int getWaits() {
+		overflowLock.lock();
+		try {
+			return waits;
+		} finally {
+			overflowLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,497 @@
+package memAllocator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Thread safe fixed memory module without locks.
+ * Fixed partitions never split or merge, so a partition is either free or holds one job.
+ * The partitions of each size have a bitmap with a bit set for every free one,
+ * a job claims a partition by clearing its bit with compare and set and frees it by setting the bit again.
+ * The wait queue is a concurrent queue per job size.
+ * A job that is queued checks the bitmaps once more after queueing, and a freed partition checks the
+ * queue once more after being freed, so a job never waits while a partition it fits is free.
+ * Random removal picks from the resident jobs, which are kept in stripes of LiveJobSet by partition,
+ * each under its own short lock, so the pick is uniform without scanning the partitions.
+ */
+public class ConcurrentFixedMemory implements MemoryModule{
+
+	private static final int NONE = -1;
+
+	private long totalSize;
+	//Size and address of each partition, in address order
+	private long[] sizes;
+	private long[] addresses;
+	//Job in each partition, null while it is free
+	private AtomicReferenceArray<Job> jobs;
+	//Distinct partition sizes ascending, and the partitions of each size in address order
+	private long[] groupSizes;
+	private int[][] members;
+	//Group of each partition and its position among the group's members
+	private int[] groupOf;
+	private int[] memberOf;
+	//One bit per member of a group, set while that partition is free
+	private AtomicLongArray[] freeBits;
+	//Free partitions of each group, raised before a bit is set and lowered after one is cleared
+	//so it is never below the bits actually set and an empty group is skipped without reading its bitmap
+	private AtomicIntegerArray freeCounts;
+	//Partition holding each job in memory
+	private ConcurrentHashMap<Integer, Integer> slotOf;
+	//Waiting jobs by size, each size first in first out
+	private ConcurrentSkipListMap<Long, ConcurrentLinkedQueue<Job>> waitJobs;
+	//Jobs in the wait queue, raised before a job is queued
+	private AtomicInteger waiting;
+	//Index of the partition after the most recently allotted one, where next fit starts
+	private AtomicInteger lastAlotted;
+	private AtomicLong usedSize;
+	private AtomicLong fragmentation;
+	private AtomicInteger allocations;
+	private AtomicInteger waits;
+	private volatile boolean verbose = true;
+	//Ids of the jobs in memory, striped by partition, each stripe guarded by its own monitor
+	private LiveJobSet[] residents;
+	//Jobs in the stripes, raised after a job is added and lowered after one is removed
+	private AtomicInteger residentCount;
+	//Each thread's source for random removals once one is set, ThreadLocalRandom until then
+	private volatile ThreadLocal<Random> seededRandom;
+
+	/**
+	 * Reads the partitions from the same config files as FixedMemory
+	 * @param size unused, the total size is the sum of the loaded partitions
+	 * @param memAddress
+	 * @param configName
+	 */
+	public ConcurrentFixedMemory(long size, long memAddress, String configName) {
+		ArrayList<Partition> partitions = new ArrayList<Partition>();
+		HashSet<Long> sizeSet = new HashSet<Long>();
+		FixedMemory.loadPartitions(configName, memAddress, partitions, sizeSet);
+		int count = partitions.size();
+		sizes = new long[count];
+		addresses = new long[count];
+		jobs = new AtomicReferenceArray<Job>(count);
+		groupSizes = new long[sizeSet.size()];
+		int g = 0;
+		for(long partitionSize : sizeSet){
+			groupSizes[g++] = partitionSize;
+		}
+		Arrays.sort(groupSizes);
+		groupOf = new int[count];
+		memberOf = new int[count];
+		int[] groupCounts = new int[groupSizes.length];
+		for (int i = 0; i < count; i++) {
+			sizes[i] = partitions.get(i).getSize();
+			totalSize += sizes[i];
+			addresses[i] = partitions.get(i).getMemAddress();
+			groupOf[i] = Arrays.binarySearch(groupSizes, sizes[i]);
+			memberOf[i] = groupCounts[groupOf[i]]++;
+		}
+		members = new int[groupSizes.length][];
+		freeBits = new AtomicLongArray[groupSizes.length];
+		freeCounts = new AtomicIntegerArray(groupSizes.length);
+		for (g = 0; g < groupSizes.length; g++) {
+			members[g] = new int[groupCounts[g]];
+			freeBits[g] = new AtomicLongArray((groupCounts[g] + 63) >>> 6);
+			freeCounts.set(g, groupCounts[g]);
+		}
+		//Every partition starts out free
+		for (int i = 0; i < count; i++) {
+			members[groupOf[i]][memberOf[i]] = i;
+			freeBits[groupOf[i]].getAndAccumulate(memberOf[i] >>> 6, 1L << memberOf[i], (w, bit) -> w | bit);
+		}
+		slotOf = new ConcurrentHashMap<Integer, Integer>();
+		residents = new LiveJobSet[Math.max(1, Runtime.getRuntime().availableProcessors() * 2)];
+		for (int i = 0; i < residents.length; i++) {
+			residents[i] = new LiveJobSet();
+		}
+		residentCount = new AtomicInteger();
+		waitJobs = new ConcurrentSkipListMap<Long, ConcurrentLinkedQueue<Job>>();
+		waiting = new AtomicInteger();
+		lastAlotted = new AtomicInteger();
+		usedSize = new AtomicLong();
+		fragmentation = new AtomicLong();
+		allocations = new AtomicInteger();
+		waits = new AtomicInteger();
+	}
+
+	/**
+	 * Claims a partition for the job with the given algorithm, or queues it if there is none
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		int part = claim(algorithmID, newJob.getSize());
+		if(part != NONE){
+			allocate(part, newJob);
+			return;
+		}
+		ConcurrentLinkedQueue<Job> sameSize = waitJobs.computeIfAbsent(newJob.getSize(), s -> new ConcurrentLinkedQueue<Job>());
+		waiting.incrementAndGet();
+		sameSize.add(newJob);
+		//A partition freed during the search did not see the job in the queue, so look once more
+		part = claim(algorithmID, newJob.getSize());
+		if(part != NONE){
+			if(sameSize.remove(newJob)){
+				waiting.decrementAndGet();
+				allocate(part, newJob);
+				return;
+			}
+			//Another thread already took the job from the queue and placed it
+			release(part);
+		}
+		waits.incrementAndGet();
+	}
+
+	/**
+	 * @param algorithmID
+	 * @param size
+	 * @return index of the partition claimed, or NONE if no free partition can hold the size
+	 */
+	private int claim(Algorithm algorithmID, long size) {
+		int first = Arrays.binarySearch(groupSizes, size);
+		if(first < 0){
+			first = -first - 1;
+		}
+		if(algorithmID == Algorithm.BEST_FIT){
+			for (int g = first; g < groupSizes.length; g++) {
+				int part = claimLowest(g);
+				if(part != NONE){
+					return part;
+				}
+			}
+		}
+		else if(algorithmID == Algorithm.WORST_FIT){
+			for (int g = groupSizes.length - 1; g >= first; g--) {
+				int part = claimLowest(g);
+				if(part != NONE){
+					return part;
+				}
+			}
+		}
+		else if(algorithmID == Algorithm.FIRST_FIT){
+			return claimFrom(first, 0);
+		}
+		else if(algorithmID == Algorithm.NEXT_FIT){
+			int part = claimFrom(first, lastAlotted.get());
+			return part == NONE ? claimFrom(first, 0) : part;
+		}
+		return NONE;
+	}
+
+	/**
+	 * @param g
+	 * @return the lowest addressed free partition of the group, claimed, or NONE if the group has none free
+	 */
+	private int claimLowest(int g) {
+		int member;
+		while(freeCounts.get(g) > 0 && (member = lowestFree(g, 0)) != NONE){
+			if(tryClaim(members[g][member])){
+				return members[g][member];
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Claims the lowest addressed free partition at or after the start among the groups that fit
+	 * @param first smallest group that fits
+	 * @param start lowest partition index to take
+	 * @return the partition claimed, or NONE if there is no free one from the start on
+	 */
+	private int claimFrom(int first, int start) {
+		while(true){
+			int lowest = NONE;
+			for (int g = first; g < groupSizes.length; g++) {
+				if(freeCounts.get(g) == 0){
+					continue;
+				}
+				//First member at or after the start
+				int from = Arrays.binarySearch(members[g], start);
+				int member = lowestFree(g, from < 0 ? -from - 1 : from);
+				if(member != NONE && (lowest == NONE || members[g][member] < lowest)){
+					lowest = members[g][member];
+				}
+			}
+			if(lowest == NONE || tryClaim(lowest)){
+				return lowest;
+			}
+		}
+	}
+
+	/**
+	 * @param g
+	 * @param from first member to look at
+	 * @return the first member from there on whose bit is set, or NONE
+	 */
+	private int lowestFree(int g, int from) {
+		AtomicLongArray bits = freeBits[g];
+		int word = from >>> 6;
+		if(word >= bits.length()){
+			return NONE;
+		}
+		long w = bits.get(word) & (-1L << (from & 63));
+		while(w == 0){
+			if(++word == bits.length()){
+				return NONE;
+			}
+			w = bits.get(word);
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(w);
+	}
+
+	/**
+	 * @param part
+	 * @return if the partition was free and this thread cleared its bit
+	 */
+	private boolean tryClaim(int part) {
+		int g = groupOf[part];
+		int word = memberOf[part] >>> 6;
+		long bit = 1L << memberOf[part];
+		long w;
+		do {
+			w = freeBits[g].get(word);
+			if((w & bit) == 0){
+				return false;
+			}
+		} while(!freeBits[g].compareAndSet(word, w, w & ~bit));
+		freeCounts.decrementAndGet(g);
+		return true;
+	}
+
+	/**
+	 * Sets the partition's bit so other threads can claim it
+	 * @param part
+	 */
+	private void free(int part) {
+		int g = groupOf[part];
+		freeCounts.incrementAndGet(g);
+		freeBits[g].getAndAccumulate(memberOf[part] >>> 6, 1L << memberOf[part], (w, bit) -> w | bit);
+	}
+
+	/**
+	 * Puts the job in a partition this thread has claimed
+	 * @param part
+	 * @param newJob
+	 */
+	private void allocate(int part, Job newJob) {
+		jobs.set(part, newJob);
+		//Listed before it can be found by id, so a removal always finds it in its stripe
+		LiveJobSet stripe = residents[part % residents.length];
+		synchronized (stripe) {
+			stripe.add(newJob.getId(), part);
+		}
+		residentCount.incrementAndGet();
+		slotOf.put(newJob.getId(), part);
+		//Next fit carries on at the partition after this one
+		lastAlotted.set(part + 1);
+		usedSize.addAndGet(newJob.getSize());
+		fragmentation.addAndGet(sizes[part] - newJob.getSize());
+		allocations.incrementAndGet();
+		newJob.placed();
+	}
+
+	/**
+	 * Gives a claimed partition to the largest waiting job that fits it, or frees it.
+	 * After freeing, the queue is checked again for a job queued while the partition was still claimed.
+	 * @param part
+	 */
+	private void release(int part) {
+		while(true){
+			Job j = pollWaiting(sizes[part]);
+			if(j != null){
+				allocate(part, j);
+				return;
+			}
+			free(part);
+			if(!waitingFits(sizes[part]) || !tryClaim(part)){
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Takes the oldest job of the largest waiting size that fits the space
+	 * @param space
+	 * @return the job, or null if no waiting job fits
+	 */
+	private Job pollWaiting(long space) {
+		if(waiting.get() == 0){
+			return null;
+		}
+		for(ConcurrentLinkedQueue<Job> sameSize : waitJobs.headMap(space, true).descendingMap().values()){
+			Job j = sameSize.poll();
+			if(j != null){
+				waiting.decrementAndGet();
+				return j;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param space
+	 * @return if some waiting job fits the space
+	 */
+	private boolean waitingFits(long space) {
+		if(waiting.get() == 0){
+			return false;
+		}
+		for(ConcurrentLinkedQueue<Job> sameSize : waitJobs.headMap(space, true).values()){
+			if(!sameSize.isEmpty()){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Simulates a random job completing.
+	 * A rank among the resident jobs is drawn and looked up stripe by stripe,
+	 * the draw is repeated if another thread changed the stripes or won the job first.
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		Random random = random();
+		int count;
+		while((count = residentCount.get()) > 0){
+			int rank = random.nextInt(count);
+			int id = -1;
+			for(LiveJobSet stripe : residents){
+				synchronized (stripe) {
+					if(rank < stripe.size()){
+						id = stripe.idAt(rank);
+						break;
+					}
+					rank -= stripe.size();
+				}
+			}
+			if(id != -1 && remove(id)){
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the calling thread's random source
+	 */
+	private Random random() {
+		ThreadLocal<Random> seeded = seededRandom;
+		return seeded == null ? ThreadLocalRandom.current() : seeded.get();
+	}
+
+	/**
+	 * Simulates a job completing, its partition goes to a waiting job or back to the bitmap
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		if(remove(id)){
+			return true;
+		}
+		if(verbose){
+			System.out.println("Job with ID " + id + "  was not found.");
+			System.out.println("No job was removed.");
+		}
+		return false;
+	}
+
+	/**
+	 * @param id
+	 * @return if this thread removed the job, only one thread wins a job removed by several
+	 */
+	private boolean remove(int id) {
+		Integer part = slotOf.remove(id);
+		if(part == null){
+			return false;
+		}
+		Job j = jobs.getAndSet(part, null);
+		LiveJobSet stripe = residents[part % residents.length];
+		synchronized (stripe) {
+			stripe.remove(id);
+		}
+		residentCount.decrementAndGet();
+		usedSize.addAndGet(-j.getSize());
+		fragmentation.addAndGet(j.getSize() - sizes[part]);
+		release(part);
+		return true;
+	}
+
+	public void printAll(){
+		StringBuilder text = new StringBuilder();
+		snapshot().render(text);
+		System.out.print(text);
+	}
+
+	/**
+	 * Taken without stopping the other threads, so it may catch some of them mid operation.
+	 * Waiting jobs are listed by size rather than arrival.
+	 */
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Concurrent Fixed Partition", totalSize);
+		for (int i = 0; i < sizes.length; i++) {
+			snapshot.block(addresses[i], sizes[i], jobs.get(i));
+		}
+		ArrayList<Job> waitingJobs = new ArrayList<Job>();
+		for(ConcurrentLinkedQueue<Job> sameSize : waitJobs.values()){
+			waitingJobs.addAll(sameSize);
+		}
+		return snapshot.waiting(waitingJobs).build();
+	}
+
+	public boolean isEmpty(){
+		return slotOf.isEmpty();
+	}
+
+	/**
+	 * Only prints when a job to remove is not found
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Each thread removing jobs draws from its own Random, seeded from the given one the first time it removes
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		seededRandom = ThreadLocal.withInitial(() -> new Random(random.nextLong()));
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		return usedSize.get();
+	}
+
+	/**
+	 * @return internal fragmentation of all busy partitions
+	 */
+	public long getFragmentation() {
+		return fragmentation.get();
+	}
+
+	public int getAllocations() {
+		return allocations.get();
+	}
+
+	public int getWaits() {
+		return waits.get();
+	}
+}
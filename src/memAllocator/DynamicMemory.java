@@ -1,32 +1,55 @@
 package memAllocator;
 
-import java.util.ArrayDeque;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Random;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
 
+import memAllocator.Instrumentation.Probe;
 import memAllocator.MemoryTester.Algorithm;
 
 /**
  * @author Ryan Ceresani
  *
  */
-public class DynamicMemory{
+public class DynamicMemory implements MemoryModule, MemoryMetricsMBean{
 
 	private long totalSize;
 	private TreeMap<Long, Partition> partitions;
-	private ArrayDeque<Job> waitJobs;
+	private WaitQueue waitJobs;
 	private long address;
 	private HashMap<Integer, Partition> jobMap;
+	//Ids of the jobs in jobMap, for picking a random one
+	private LiveJobSet liveJobs;
 	public TreeMap<Long, Partition> freeList;
+	//Free partitions indexed by block size, each size holds its blocks in address order
+	private TreeMap<Long, TreeMap<Long, Partition>> sizeList;
+	//Last key of sizeList, kept so reading it is constant time
+	private long largestFree;
 	private long lastAllocated;
+	private long usedSize;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
+	//Most bytes compaction may move per remove, 0 never compacts
+	private long compactionBudget;
+	private long compactionMoved;
+	private int compactionAdmitted;
+	//Counts add and remove calls, waiting time is measured in these ticks
+	private long clock;
+	//Tick each waiting job was queued at
+	private HashMap<Integer, Long> queuedAt;
+	private long waitTicks;
+	//Last id handed to a block, blocks count down from -2 so they never meet job ids or the -1 of no job
+	private int lastBlockId = -1;
 
 	/**
 	 * Dynamic Memory module constructor
@@ -37,9 +60,12 @@ public class DynamicMemory{
 		totalSize = size;
 		this.address = memAddress;
 		partitions = new TreeMap<Long, Partition>();
-		waitJobs = new ArrayDeque<Job>();
+		waitJobs = new WaitQueue();
 		jobMap = new HashMap<Integer, Partition>();
+		liveJobs = new LiveJobSet();
 		freeList = new TreeMap<Long, Partition>();
+		sizeList = new TreeMap<Long, TreeMap<Long, Partition>>();
+		queuedAt = new HashMap<Integer, Long>();
 		initPartition(partitions);
 		lastAllocated = 0;
 	}
@@ -51,7 +77,154 @@ public class DynamicMemory{
 	private void initPartition(TreeMap<Long, Partition> partitions) {
 		Partition start = new Partition(totalSize, address);
 		this.partitions.put(address, start);
-		freeList.put(start.getMemAddress(), start);
+		addFree(start);
+	}
+
+	/**
+	 * Writes the partitions in address order with their jobs, the wait queue with each job's queued tick,
+	 * the next fit rover and the counters
+	 * @param fileName
+	 */
+	public void checkpoint(String fileName) throws IOException {
+		DataOutputStream out = Checkpoint.create(fileName, Checkpoint.DYNAMIC);
+		try {
+			out.writeLong(totalSize);
+			out.writeLong(address);
+			out.writeLong(lastAllocated);
+			out.writeLong(usedSize);
+			out.writeInt(allocations);
+			out.writeInt(waits);
+			out.writeLong(compactionMoved);
+			out.writeInt(compactionAdmitted);
+			out.writeLong(clock);
+			out.writeLong(waitTicks);
+			out.writeInt(partitions.size());
+			for(Partition p : partitions.values()){
+				out.writeLong(p.getSize());
+				Checkpoint.writeJob(out, p.isFree() ? null : p.getCurrentJob());
+			}
+			out.writeInt(waitJobs.size());
+			for(Job j : waitJobs){
+				Checkpoint.writeJob(out, j);
+				out.writeLong(queuedAt.get(j.getId()));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Rebuilds a memory from a checkpoint.
+	 * The partitions come back in address order, so the partition map, free list and size index
+	 * are bulk loaded from sorted runs in linear time.
+	 * @param fileName
+	 * @return the restored memory
+	 */
+	public static DynamicMemory restore(String fileName) throws IOException {
+		DataInputStream in = Checkpoint.open(fileName, Checkpoint.DYNAMIC);
+		try {
+			DynamicMemory mem = new DynamicMemory(in.readLong(), in.readLong());
+			mem.lastAllocated = in.readLong();
+			mem.usedSize = in.readLong();
+			mem.allocations = in.readInt();
+			mem.waits = in.readInt();
+			mem.compactionMoved = in.readLong();
+			mem.compactionAdmitted = in.readInt();
+			mem.clock = in.readLong();
+			mem.waitTicks = in.readLong();
+			int count = in.readInt();
+			ArrayList<Long> addresses = new ArrayList<Long>(count);
+			ArrayList<Partition> all = new ArrayList<Partition>(count);
+			ArrayList<Long> freeAddresses = new ArrayList<Long>();
+			ArrayList<Partition> free = new ArrayList<Partition>();
+			//Free partitions of each size, in address order
+			HashMap<Long, ArrayList<Partition>> bySize = new HashMap<Long, ArrayList<Partition>>();
+			mem.jobMap = new HashMap<Integer, Partition>(count * 2);
+			long currentMemAddress = mem.address;
+			for (int i = 0; i < count; i++) {
+				Partition p = new Partition(in.readLong(), currentMemAddress);
+				Job job = Checkpoint.readJob(in);
+				addresses.add(currentMemAddress);
+				all.add(p);
+				if(job == null){
+					freeAddresses.add(currentMemAddress);
+					free.add(p);
+					ArrayList<Partition> sameSize = bySize.get(p.getSize());
+					if(sameSize == null){
+						sameSize = new ArrayList<Partition>();
+						bySize.put(p.getSize(), sameSize);
+					}
+					sameSize.add(p);
+				}
+				else {
+					p.setCurrentJob(job);
+					mem.jobMap.put(job.getId(), p);
+					mem.liveJobs.add(job.getId(), 0);
+				}
+				currentMemAddress += p.getSize();
+			}
+			mem.partitions = Checkpoint.sortedTreeMap(addresses, all);
+			mem.freeList = Checkpoint.sortedTreeMap(freeAddresses, free);
+			Long[] sizes = bySize.keySet().toArray(new Long[bySize.size()]);
+			Arrays.sort(sizes);
+			ArrayList<TreeMap<Long, Partition>> sizeClasses = new ArrayList<TreeMap<Long, Partition>>(sizes.length);
+			for(Long size : sizes){
+				ArrayList<Partition> sameSize = bySize.get(size);
+				ArrayList<Long> sameSizeAddresses = new ArrayList<Long>(sameSize.size());
+				for(Partition p : sameSize){
+					sameSizeAddresses.add(p.getMemAddress());
+				}
+				sizeClasses.add(Checkpoint.sortedTreeMap(sameSizeAddresses, sameSize));
+			}
+			mem.sizeList = Checkpoint.sortedTreeMap(Arrays.asList(sizes), sizeClasses);
+			mem.largestFree = sizes.length == 0 ? 0 : sizes[sizes.length - 1];
+			int waiting = in.readInt();
+			for (int i = 0; i < waiting; i++) {
+				Job j = Checkpoint.readJob(in);
+				mem.waitJobs.add(j);
+				mem.queuedAt.put(j.getId(), in.readLong());
+			}
+			return mem;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Adds a free partition to the address ordered free list and the size index
+	 * @param p
+	 */
+	private void addFree(Partition p) {
+		freeList.put(p.getMemAddress(), p);
+		TreeMap<Long, Partition> sameSize = sizeList.get(p.getSize());
+		if(sameSize == null){
+			sameSize = new TreeMap<Long, Partition>();
+			sizeList.put(p.getSize(), sameSize);
+		}
+		sameSize.put(p.getMemAddress(), p);
+		if(p.getSize() > largestFree){
+			largestFree = p.getSize();
+		}
+	}
+
+	/**
+	 * Removes a free partition from the free list and the size index.
+	 * Must be called before the partition's size is changed.
+	 * @param p
+	 */
+	private void removeFree(Partition p) {
+		freeList.remove(p.getMemAddress());
+		TreeMap<Long, Partition> sameSize = sizeList.get(p.getSize());
+		if(sameSize != null){
+			sameSize.remove(p.getMemAddress());
+			if(sameSize.isEmpty()){
+				sizeList.remove(p.getSize());
+				//Only the last block of the largest size changes the largest free block
+				if(p.getSize() == largestFree){
+					largestFree = sizeList.isEmpty() ? 0 : sizeList.lastKey();
+				}
+			}
+		}
 	}
 
 	public void printAll(){
@@ -121,6 +294,14 @@ public class DynamicMemory{
 		System.out.format(endFormat, totalSize + "k");
 	}
 
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Dynamic Partition", totalSize);
+		for(Partition p : partitions.values()){
+			snapshot.block(p.getMemAddress(), p.getSize(), p.isFree() ? null : p.getCurrentJob());
+		}
+		return snapshot.waiting(waitJobs).build();
+	}
+
 	/**
 	 * Print out the queue of waiting jobs
 	 */
@@ -148,7 +329,10 @@ public class DynamicMemory{
 	 * @param newJob
 	 */
 	public void addJob(Algorithm algorithmID, Job newJob){
-		System.out.println("\n***ADD JOB " + newJob.getId());
+		clock++;
+		if(verbose){
+			System.out.println("\n***ADD JOB " + newJob.getId());
+		}
 		if(algorithmID == Algorithm.BEST_FIT){
 			addBestFit(newJob);
 		}
@@ -163,41 +347,104 @@ public class DynamicMemory{
 		}
 	}
 
+	/**
+	 * Places a block for a module built on this one, such as the slabs of SlabMemory.
+	 * The block is held by a placeholder job with an id below -1, so it takes no id from the
+	 * job sequence, has no listener and cannot clash with job ids, recorded ones included.
+	 * @param algorithmID
+	 * @param size
+	 * @return id the block is freed under with removeJob, or -1 if no free block is large enough
+	 */
+	int allocateBlock(Algorithm algorithmID, long size){
+		if(largestFree < size){
+			return -1;
+		}
+		Job block = new Job((int) size, --lastBlockId);
+		addJob(algorithmID, block);
+		return block.getId();
+	}
+
+	/**
+	 * Places a burst of jobs together, largest first.
+	 * First fit decreasing is done in one pass over the free list: each free block in address order
+	 * takes the largest batch job that fits it, and its remainder keeps taking jobs until none fits.
+	 * That is the placement of first fitting the jobs one at a time from largest to smallest,
+	 * without rescanning the free list for every job.
+	 * The other algorithms place the sorted jobs one at a time, so best fit becomes best fit decreasing.
+	 * Jobs larger than the largest free block go straight to the wait queue.
+	 * @param algorithmID
+	 * @param jobs
+	 */
+	public void addJobs(Algorithm algorithmID, Collection<Job> jobs){
+		clock += jobs.size();
+		if(verbose){
+			System.out.println("\n***ADD " + jobs.size() + " JOBS");
+		}
+		if(algorithmID == Algorithm.FIRST_FIT){
+			addFirstFitDecreasing(jobs);
+			return;
+		}
+		for(Job newJob : Job.largestFirst(jobs)){
+			if(newJob.getSize() > largestFree){
+				queueJob(newJob);
+			}
+			else if(algorithmID == Algorithm.BEST_FIT){
+				addBestFit(newJob);
+			}
+			else if(algorithmID == Algorithm.WORST_FIT){
+				addWorstFit(newJob);
+			}
+			else if(algorithmID == Algorithm.NEXT_FIT){
+				addNextFit(newJob);
+			}
+		}
+	}
+
+	/**
+	 * Fills the free blocks in address order from the batch, queueing what is left
+	 * @param jobs
+	 */
+	private void addFirstFitDecreasing(Collection<Job> jobs){
+		//The batch indexed by size, so the largest job that fits a block is one floor lookup
+		WaitQueue batch = new WaitQueue();
+		for(Job newJob : jobs){
+			batch.add(newJob);
+		}
+		Entry<Long, Partition> block = freeList.firstEntry();
+		while(block != null && !batch.isEmpty() && batch.smallestSize() <= largestFree){
+			Partition currPart = block.getValue();
+			Job newJob = batch.pollFloor(currPart.getSize());
+			if(newJob == null){
+				block = freeList.higherEntry(block.getKey());
+			}
+			else {
+				allocate(currPart, newJob);
+				//The remainder of the block, if any, is the next free block
+				block = freeList.ceilingEntry(lastAllocated);
+			}
+		}
+		for(Job newJob : batch){
+			queueJob(newJob);
+		}
+	}
+
 	/**
 	 * BestFit Memory Allocation for Dynamic Memory
 	 * Finds closest matchin place to the incoming job (if any) and assigns it there.
+	 * The size index gives the smallest block that can hold the job with a single ceiling lookup.
 	 * @param newJob
 	 */
 	private void addBestFit(Job newJob){
-		Long bestFit = null;
-		Partition bestFitPart = null;
-		//Iterate through list of free spaces
-		for(Long address : freeList.keySet()){
-			Partition currPart = freeList.get(address);
-			if(currPart.canFit(newJob)){
-				long testFit = currPart.getSize() - newJob.getSize();
-				//Check if there is no fit yet, if the fit is perfect, or its smaller than current best fit
-				if(bestFit == null || testFit == 0 || testFit < bestFit) {
-					bestFitPart = currPart;
-					bestFit = testFit;
-				}
-			}
-
-		}
+		Entry<Long, TreeMap<Long, Partition>> bestFit = sizeList.ceilingEntry(newJob.getSize());
+		//The size index hands back the one block that is used, or none
+		Instrumentation.record(Probe.FIT_SEARCH, bestFit == null ? 0 : 1);
 		//If no fit was found, job goes to wait queue
-		if(bestFitPart == null){
-			waitJobs.add(newJob);
+		if(bestFit == null){
+			queueJob(newJob);
 		}
-		//Fit was found
+		//Fit was found, lowest address among the equally sized blocks is used
 		else {
-			//Designate a partition exactly the size of the job and add a blank partition immediately afterwads in the blank space
-			allocate(bestFitPart, newJob);
-			//Map job to partition it is in for easy access later
-			jobMap.put(newJob.getId(), bestFitPart);
-			//Set the partitions current job
-			bestFitPart.setCurrentJob(newJob);
-			//remove the location from the free list
-			freeList.remove(bestFitPart.getMemAddress());
+			allocate(bestFit.getValue().firstEntry().getValue(), newJob);
 		}
 	}
 
@@ -207,106 +454,134 @@ public class DynamicMemory{
 	 * @param newJob
 	 */
 	private void addFirstFit(Job newJob){
+		int examined = 0;
 		//Iterate through list of free spaces
 		for(Long address : freeList.keySet()){
+			examined++;
 			Partition currPart = freeList.get(address);
 			if(currPart.canFit(newJob)){
+				Instrumentation.record(Probe.FIT_SEARCH, examined);
 				//Designate a partition exactly the size of the job and add a blank partition immediately afterwads in the blank space
 				allocate(currPart, newJob);
-				//Set the partitions current job
-				currPart.setCurrentJob(newJob);
-				//Map job to partition it is in for easy access later
-				jobMap.put(newJob.getId(), currPart);
-				//remove the location from the free list
-				freeList.remove(currPart.getMemAddress());
 				//Match found, we can immediately exit the method
 				return;
 			}
 		}
-		waitJobs.add(newJob);
+		Instrumentation.record(Probe.FIT_SEARCH, examined);
+		queueJob(newJob);
 	}
 
 	/**
 	 * Same as Best Fit but looks for one that leaves most fragmentation
+	 * The largest free block is always the last entry of the size index.
 	 * @param newJob
 	 */
 	private void addWorstFit(Job newJob){
-		Long worstFit = null;
-		Partition worstFitPart = null;
-		for(Long address : freeList.keySet()){
-			Partition currPart = freeList.get(address);
-			if(currPart.canFit(newJob)){
-				long testFit = currPart.getSize() - newJob.getSize();
-				if(worstFit == null || testFit == 0 || testFit > worstFit) {
-					worstFitPart = currPart;
-					worstFit = testFit;
-				}
-			}
-		}
-		if(worstFitPart == null){
-			waitJobs.add(newJob);
+		Entry<Long, TreeMap<Long, Partition>> worstFit = sizeList.lastEntry();
+		Instrumentation.record(Probe.FIT_SEARCH, worstFit == null ? 0 : 1);
+		if(worstFit == null || worstFit.getKey() < newJob.getSize()){
+			queueJob(newJob);
 		}
 		else {
-			allocate(worstFitPart, newJob);
-			jobMap.put(newJob.getId(), worstFitPart);
-			worstFitPart.setCurrentJob(newJob);
-			freeList.remove(worstFitPart.getMemAddress());
+			allocate(worstFit.getValue().firstEntry().getValue(), newJob);
 		}
 	}
 
 	/**
-	 * Same as First Fit but starts at the most recently allocated partition and works around
+	 * Same as First Fit but starts where the last allocation ended and works around.
+	 * The rover is an address, so it stays valid when the block holding it is joined with others.
 	 * @param newJob
 	 */
 	private void addNextFit(Job newJob){
+		//Start at the free block holding the rover, or the first one above it
+		Entry<Long, Partition> start = freeList.floorEntry(lastAllocated);
+		if(start == null || start.getKey() + start.getValue().getSize() <= lastAllocated){
+			start = freeList.ceilingEntry(lastAllocated);
+		}
+		long from = start == null ? lastAllocated : start.getKey();
+		int examined = 0;
 		//Iterate to the end of the Free Space list, starting at the desired location.
-		Iterator<Map.Entry<Long,Partition>> iter = freeList.tailMap(lastAllocated).entrySet().iterator();
-		while (iter.hasNext()){
-			Map.Entry<Long, Partition> entry = iter.next();
-			Partition currPart = entry.getValue();
-			if(currPart.isFree()){
-				if(currPart.canFit(newJob)){
-					allocate(currPart, newJob);
-					currPart.setCurrentJob(newJob);
-					jobMap.put(newJob.getId(), currPart);
-					freeList.remove(currPart.getMemAddress());
-					return;
-				}
+		for(Partition currPart : freeList.tailMap(from).values()){
+			examined++;
+			if(currPart.canFit(newJob)){
+				Instrumentation.record(Probe.FIT_SEARCH, examined);
+				allocate(currPart, newJob);
+				return;
 			}
 		}
 		//If nothing found to the end, go from the beginning to the original space to complete full traversal
-		iter = freeList.headMap(lastAllocated).entrySet().iterator();
-		while (iter.hasNext()){
-			Map.Entry<Long, Partition>entry = iter.next();
-			Partition currPart = entry.getValue();
-			if(currPart.isFree()){
-				if(currPart.canFit(newJob)){
-					allocate(currPart, newJob);
-					currPart.setCurrentJob(newJob);
-					jobMap.put(newJob.getId(), currPart);
-					freeList.remove(currPart.getMemAddress());
-					return;
-				}
+		for(Partition currPart : freeList.headMap(from).values()){
+			examined++;
+			if(currPart.canFit(newJob)){
+				Instrumentation.record(Probe.FIT_SEARCH, examined);
+				allocate(currPart, newJob);
+				return;
 			}
 		}
-		waitJobs.add(newJob);
+		Instrumentation.record(Probe.FIT_SEARCH, examined);
+		queueJob(newJob);
 	}	
 
 	/**
 	 * Splits the partition into two
 	 * One partition contains the job
-	 * The other contains remaining free space
+	 * The other contains remaining free space (only created if the job does not fill the partition)
+	 * Then maps the job to its partition and takes the partition off the free list.
 	 * @param bestFitPart
 	 * @param newJob
 	 */
 	private void allocate(Partition bestFitPart, Job newJob) {
-		long newMemLoc = bestFitPart.getMemAddress() + newJob.getSize();
-		Partition newPart = new Partition(bestFitPart.getSize() - newJob.getSize(), newMemLoc);
-		bestFitPart.setSize(newJob.getSize());
-		partitions.put(newMemLoc, newPart);
-		freeList.put(newMemLoc, newPart);
+		removeFree(bestFitPart);
+		long remaining = bestFitPart.getSize() - newJob.getSize();
+		if(remaining > 0){
+			long newMemLoc = bestFitPart.getMemAddress() + newJob.getSize();
+			Partition newPart = new Partition(remaining, newMemLoc);
+			bestFitPart.setSize(newJob.getSize());
+			partitions.put(newMemLoc, newPart);
+			addFree(newPart);
+		}
+		//Set the partitions current job
+		bestFitPart.setCurrentJob(newJob);
+		//Next fit carries on right after this job
+		lastAllocated = bestFitPart.getMemAddress() + newJob.getSize();
+		//Map job to partition it is in for easy access later
+		jobMap.put(newJob.getId(), bestFitPart);
+		liveJobs.add(newJob.getId(), 0);
+		usedSize += bestFitPart.getSize();
+		allocations++;
+		newJob.placed();
+	}
+
+	/**
+	 * Puts a job that has no space in the wait queue
+	 * @param newJob
+	 */
+	private void queueJob(Job newJob) {
+		waitJobs.add(newJob);
+		Instrumentation.record(Probe.QUEUED, waitJobs.size());
+		queuedAt.put(newJob.getId(), clock);
+		waits++;
+	}
+
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = randomJobId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
 	}
 
+	/**
+	 * @return id of a random job currently in memory, -1 if memory is empty
+	 */
+	int randomJobId(){
+		return liveJobs.randomId();
+	}
 
 	/**
 	 * Simulates a job completing
@@ -314,21 +589,33 @@ public class DynamicMemory{
 	 * deallocates the memory, updates the free list,
 	 *  and then checks to see if anything in the Wait Queue can be assigned
 	 * @param id
+	 * @return if the job was found in memory
 	 */
-	public void removeJob(){
-		List<Integer> keysAsArray = new ArrayList<Integer>(jobMap.keySet());
-		int rand = ThreadLocalRandom.current().nextInt(keysAsArray.size());
-		int id = keysAsArray.get(rand);
-		System.out.println("\n***REMOVE JOB " + id);
-		try {
-			Partition p = jobMap.get(id);
-			jobMap.remove(id);
-			p.setCurrentJob(null);
-			deallocate(p);
-			checkWaitQueue();
-		} catch (NullPointerException e) {
-			System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+	public boolean removeJob(int id){
+		clock++;
+		if(verbose){
+			System.out.println("\n***REMOVE JOB " + id);
 		}
+		Partition p = jobMap.remove(id);
+		if(p == null){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+			}
+			return false;
+		}
+		liveJobs.remove(id);
+		p.setCurrentJob(null);
+		usedSize -= p.getSize();
+		long start = Instrumentation.start();
+		deallocate(p);
+		Instrumentation.stop(Probe.DEALLOCATE, start);
+		start = Instrumentation.start();
+		checkWaitQueue();
+		Instrumentation.stop(Probe.WAIT_CHECK, start);
+		if(compactionBudget > 0){
+			compact();
+		}
+		return true;
 	}
 
 	/**
@@ -361,54 +648,225 @@ public class DynamicMemory{
 
 		//Isolated memory, just gets added to free list on its own
 		if(freeNeighbors == 0){
-			freeList.put(p.getMemAddress(), p);
+			addFree(p);
 		}
 
 		//Joins all three empty partitions together
 		else if(freeNeighbors == 2){
 			partitions.remove(p.getMemAddress());
 			partitions.remove(higher.getMemAddress());
+			removeFree(higher);
+			removeFree(lower);
 			lower.setSize(lower.getSize() + p.getSize() + higher.getSize());
-			freeList.remove(higher.getMemAddress());
+			addFree(lower);
 		}
 
 		//checks which of the two adjacent memory slots is open and joins with that
 		else{
-			if(!higher.equals(null) && higher.isFree()){
+			if(higher != null && higher.isFree()){
 				partitions.remove(higher.getMemAddress());
-				freeList.remove(higher.getMemAddress());
+				removeFree(higher);
 				p.setSize(p.getSize() + higher.getSize());
-				freeList.put(p.getMemAddress(), p);
+				addFree(p);
 			}
 			else{
 				partitions.remove(p.getMemAddress());
+				removeFree(lower);
 				lower.setSize(p.getSize() + lower.getSize());
+				addFree(lower);
 			}
 		}
 	}
 
 	/**
 	 * called after memory is deallocated
-	 * Since the memory state has changed, it iterates through the waiting jobs to see if any can now fit.
-	 * If they can it adds them to the spot using First Fit
+	 * Since the memory state has changed, it admits every waiting job that now fits in one pass.
+	 * The largest waiting job that fits the largest free block goes first, using First Fit,
+	 * until no waiting job fits anymore.
 	 */
 	private void checkWaitQueue() {
-		Iterator<Job> it = waitJobs.iterator();
-		while(it.hasNext()){
-			Job j = it.next();
-			for (Long address : freeList.keySet()) {
-				Partition currPart = freeList.get(address);
-				if(currPart.canFit(j)){
-					addFirstFit(j);
-					it.remove();
-					return;
-				}
+		Job j;
+		while((j = waitJobs.pollFloor(getLargestFreeBlock())) != null){
+			waitTicks += clock - queuedAt.remove(j.getId());
+			addFirstFit(j);
+		}
+	}
+
+	/**
+	 * Slides busy partitions toward the low addresses while the waiting jobs are blocked
+	 * only by fragmentation, moving at most the budget per call (plus the rest of the last move).
+	 * The work left over carries on at the next remove, then any job that now fits is admitted.
+	 */
+	private void compact() {
+		long budget = compactionBudget;
+		while(budget > 0 && compactionNeeded()){
+			long moved = slideLowestHole();
+			if(moved < 0){
+				break;
 			}
+			budget -= moved;
+			compactionMoved += moved;
+		}
+		int admitted = allocations;
+		checkWaitQueue();
+		compactionAdmitted += allocations - admitted;
+	}
+
+	/**
+	 * @return if the smallest waiting job fits in the free memory but not in any one free block
+	 */
+	private boolean compactionNeeded() {
+		if(waitJobs.isEmpty()){
+			return false;
 		}
+		long smallest = waitJobs.smallestSize();
+		return smallest > getLargestFreeBlock() && smallest <= totalSize - usedSize;
+	}
+
+	/**
+	 * Moves the busy partition right above the lowest free block down into it.
+	 * Everything below that block is already packed, so the free space bubbles up
+	 * and joins the next free block it reaches.
+	 * @return bytes moved, or -1 if the memory is already packed
+	 */
+	private long slideLowestHole() {
+		Entry<Long, Partition> lowest = freeList.firstEntry();
+		if(lowest == null){
+			return -1;
+		}
+		Partition hole = lowest.getValue();
+		Entry<Long, Partition> above = partitions.higherEntry(hole.getMemAddress());
+		//Free blocks are always joined, so the partition above a free block is busy
+		if(above == null){
+			return -1;
+		}
+		Partition busy = above.getValue();
+		removeFree(hole);
+		partitions.remove(busy.getMemAddress());
+		busy.setMemAddress(hole.getMemAddress());
+		partitions.put(busy.getMemAddress(), busy);
+		hole.setMemAddress(busy.getMemAddress() + busy.getSize());
+		partitions.put(hole.getMemAddress(), hole);
+		//Join the free block the hole now touches, if any
+		Entry<Long, Partition> next = partitions.higherEntry(hole.getMemAddress());
+		if(next != null && next.getValue().isFree()){
+			Partition free = next.getValue();
+			removeFree(free);
+			partitions.remove(free.getMemAddress());
+			hole.setSize(hole.getSize() + free.getSize());
+		}
+		addFree(hole);
+		return busy.getSize();
+	}
+
+	/**
+	 * Print how much compaction moved against the jobs it let in and the total waiting time.
+	 * Running the same workload with a budget of 0 gives the waiting time compaction saved.
+	 */
+	public void printCompaction(){
+		System.out.println();
+		String leftAlignFormat = "| %-22s | %-13s |%n";
+		System.out.println("+Compaction Report");
+		System.out.format("+------------------------+---------------+%n");
+		System.out.format(leftAlignFormat, "Budget per Remove", compactionBudget + "k");
+		System.out.format(leftAlignFormat, "Bytes Moved", compactionMoved + "k");
+		System.out.format(leftAlignFormat, "Jobs Admitted", compactionAdmitted);
+		System.out.format(leftAlignFormat, "Total Wait", waitTicks + " steps");
+		System.out.format("+------------------------+---------------+%n");
 	}
 	
 	public boolean isEmpty(){
 		return jobMap.isEmpty();
 	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * @param compactionBudget most bytes compaction may move per remove, 0 turns it off
+	 */
+	public void setCompactionBudget(long compactionBudget) {
+		this.compactionBudget = compactionBudget;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		return usedSize;
+	}
+
+	/**
+	 * @return size of the largest free block, 0 if memory is full
+	 */
+	public long getLargestFreeBlock() {
+		return largestFree;
+	}
+
+	/**
+	 * @return free memory outside the largest free block, which no job larger than the rest can use
+	 */
+	public long getFragmentation() {
+		return getExternalFragmentation();
+	}
+
+	public long getFreeSize() {
+		return totalSize - usedSize;
+	}
+
+	public int getFreeBlockCount() {
+		return freeList.size();
+	}
+
+	public long getExternalFragmentation() {
+		return totalSize - usedSize - largestFree;
+	}
+
+	/**
+	 * @return always 0, every partition is cut to the size of its job
+	 */
+	public long getInternalFragmentation() {
+		return 0;
+	}
+
+	public double getUtilization() {
+		return (double) usedSize / totalSize;
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+
+	public long getCompactionMoved() {
+		return compactionMoved;
+	}
+
+	/**
+	 * @return waiting jobs that got memory right after compaction made room
+	 */
+	public int getCompactionAdmitted() {
+		return compactionAdmitted;
+	}
+
+	/**
+	 * @return add and remove steps that admitted jobs spent in the wait queue
+	 */
+	public long getWaitTicks() {
+		return waitTicks;
+	}
 }
 
@@ -0,0 +1,469 @@
+package memAllocator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Dynamic memory module backed by a struct of arrays partition table.
+ * Every partition is a row number, its address, size, free flag and job id are primitive columns.
+ * Rows are linked in address order so neighbours are found without a lookup,
+ * and free rows are kept in two primitive ordered indexes (by address and by size).
+ * Behaves like DynamicMemory but without a Partition object or boxed key per region.
+ */
+public class DynamicTableMemory implements MemoryModule{
+
+	private static final int NONE = -1;
+	private static final int INITIAL_ROWS = 64;
+
+	private long totalSize;
+	private long address;
+	private WaitQueue waitJobs;
+	private long lastAllocated;
+
+	//Partition table columns, indexed by row
+	private long[] rowAddress;
+	private long[] rowSize;
+	private boolean[] rowFree;
+	private int[] rowJob;
+	//Neighbouring rows in address order
+	private int[] rowNext;
+	private int[] rowPrev;
+	private int firstRow;
+
+	//Rows that are not in use, recycled before the table grows
+	private int[] spareRows;
+	private int spareCount;
+	private int rowCount;
+
+	//Job ids of the busy rows, each mapped to its row
+	private LiveJobSet liveJobs;
+
+	private RowIndex freeByAddress;
+	private RowIndex freeBySize;
+
+	private long usedSize;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
+
+	/**
+	 * Dynamic Table Memory module constructor
+	 * @param size
+	 * @param memAddress
+	 */
+	public DynamicTableMemory(long size, long memAddress) {
+		totalSize = size;
+		this.address = memAddress;
+		waitJobs = new WaitQueue();
+		rowAddress = new long[INITIAL_ROWS];
+		rowSize = new long[INITIAL_ROWS];
+		rowFree = new boolean[INITIAL_ROWS];
+		rowJob = new int[INITIAL_ROWS];
+		rowNext = new int[INITIAL_ROWS];
+		rowPrev = new int[INITIAL_ROWS];
+		spareRows = new int[INITIAL_ROWS];
+		liveJobs = new LiveJobSet();
+		freeByAddress = new RowIndex(INITIAL_ROWS);
+		freeBySize = new RowIndex(INITIAL_ROWS);
+		//The first partition is the whole memory
+		firstRow = newRow(address, totalSize);
+		rowPrev[firstRow] = NONE;
+		rowNext[firstRow] = NONE;
+		addFree(firstRow);
+		lastAllocated = 0;
+	}
+
+	/**
+	 * Takes a spare row or grows the table, and fills in a free partition
+	 * @param memAddress
+	 * @param size
+	 * @return the row
+	 */
+	private int newRow(long memAddress, long size) {
+		int row;
+		if(spareCount > 0){
+			row = spareRows[--spareCount];
+		}
+		else {
+			if(rowCount == rowAddress.length){
+				grow(rowCount * 2);
+			}
+			row = rowCount++;
+		}
+		rowAddress[row] = memAddress;
+		rowSize[row] = size;
+		rowFree[row] = true;
+		rowJob[row] = 0;
+		return row;
+	}
+
+	private void grow(int capacity) {
+		rowAddress = Arrays.copyOf(rowAddress, capacity);
+		rowSize = Arrays.copyOf(rowSize, capacity);
+		rowFree = Arrays.copyOf(rowFree, capacity);
+		rowJob = Arrays.copyOf(rowJob, capacity);
+		rowNext = Arrays.copyOf(rowNext, capacity);
+		rowPrev = Arrays.copyOf(rowPrev, capacity);
+		spareRows = Arrays.copyOf(spareRows, capacity);
+		freeByAddress.ensureCapacity(capacity);
+		freeBySize.ensureCapacity(capacity);
+	}
+
+	/**
+	 * Unlinks a row that was merged into its lower neighbour and keeps it for reuse
+	 * @param row
+	 */
+	private void releaseRow(int row) {
+		int prev = rowPrev[row];
+		int next = rowNext[row];
+		if(prev != NONE){
+			rowNext[prev] = next;
+		}
+		else {
+			firstRow = next;
+		}
+		if(next != NONE){
+			rowPrev[next] = prev;
+		}
+		spareRows[spareCount++] = row;
+	}
+
+	private void addFree(int row) {
+		freeByAddress.insert(row, rowAddress[row], 0);
+		freeBySize.insert(row, rowSize[row], rowAddress[row]);
+	}
+
+	/**
+	 * Must be called before the row's address or size is changed
+	 * @param row
+	 */
+	private void removeFree(int row) {
+		freeByAddress.remove(row);
+		freeBySize.remove(row);
+	}
+
+	public void printAll(){
+		printFreeList();
+		printSnapShot();
+		printWaitQueue();
+	}
+
+	/**
+	 * Print the free list
+	 */
+	public void printFreeList(){
+		System.out.println();
+		String leftAlignFormat = "| %-18d | %-13d |%n";
+		System.out.println("+Dynamic Free List");
+		System.out.format("+--------------------+---------------+%n");
+		System.out.format("| Beggining Address  | Block Size    |%n");
+		System.out.format("+--------------------+---------------+%n");
+		for(int row = freeByAddress.first(); row != NONE; row = freeByAddress.higher(row)){
+			System.out.format(leftAlignFormat, rowAddress[row], rowSize[row]);
+		}
+		System.out.format("+--------------------+---------------+%n");
+	}
+
+	/**
+	 * Print a snapshot of the memory at the current time.
+	 */
+	public void printSnapShot(){
+		System.out.println();
+		String leftAlignFormat = "| %-20s | %-5s %n";
+		String endFormat = " %28s ";
+		System.out.println("+Snapshot Dynamic Partition");
+		System.out.format("+----------------------+%n");
+		System.out.format("| Memory Stack         |%n");
+		System.out.format("+----------------------+%n");
+		for(int row = firstRow; row != NONE; row = rowNext[row]){
+			long breaks = rowSize[row]/10;
+			if(rowFree[row]){
+				System.out.format(leftAlignFormat, "", rowAddress[row] + "k");
+			}
+			else{
+				System.out.format(leftAlignFormat, "Job " + rowJob[row] + " = " + rowSize[row] + "k", rowAddress[row] + "k");
+			}
+			for (int i = 0; i < breaks-1; i++) {
+				System.out.format(leftAlignFormat, "","");
+			}
+			System.out.format("+----------------------+%n");
+		}
+		System.out.format(endFormat, totalSize + "k");
+	}
+
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Dynamic Partition", totalSize);
+		for(int row = firstRow; row != NONE; row = rowNext[row]){
+			if(rowFree[row]){
+				snapshot.block(rowAddress[row], rowSize[row], MemorySnapshot.FREE, 0);
+			}
+			else {
+				snapshot.block(rowAddress[row], rowSize[row], rowJob[row], rowSize[row]);
+			}
+		}
+		return snapshot.waiting(waitJobs).build();
+	}
+
+	/**
+	 * Print out the queue of waiting jobs
+	 */
+	public void printWaitQueue(){
+		if(waitJobs.isEmpty()){
+			System.out.println();
+			System.out.println("No jobs currently waiting.");
+		} else {
+			System.out.println();
+			String leftAlignFormat = "| %-20s |%n";
+			System.out.println("+Job Waiting Queue");
+			System.out.format("+----------------------+%n");
+			System.out.format("| Job                  |%n");
+			System.out.format("+----------------------+%n");
+			for(Job j : waitJobs){
+				System.out.format(leftAlignFormat, "Job " + j.getId() + " - " + (j.getSize()) + "k");
+			}
+			System.out.format("+----------------------+%n");
+		}
+	}
+
+	/**
+	 * Determines which allocation algorith to use based on algorithm enum
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		if(verbose){
+			System.out.println("\n***ADD JOB " + newJob.getId());
+		}
+		int row = NONE;
+		if(algorithmID == Algorithm.BEST_FIT){
+			row = findBestFit(newJob.getSize());
+		}
+		else if(algorithmID == Algorithm.FIRST_FIT){
+			row = findFirstFit(newJob.getSize());
+		}
+		else if(algorithmID == Algorithm.WORST_FIT){
+			row = findWorstFit(newJob.getSize());
+		}
+		else if(algorithmID == Algorithm.NEXT_FIT){
+			row = findNextFit(newJob.getSize());
+		}
+		if(row == NONE){
+			waitJobs.add(newJob);
+			waits++;
+		}
+		else {
+			allocate(row, newJob);
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return smallest free row that holds the size, lowest address first
+	 */
+	private int findBestFit(long size) {
+		return freeBySize.ceiling(size, Long.MIN_VALUE);
+	}
+
+	/**
+	 * @param size
+	 * @return lowest addressed free row that holds the size
+	 */
+	private int findFirstFit(long size) {
+		for(int row = freeByAddress.first(); row != NONE; row = freeByAddress.higher(row)){
+			if(rowSize[row] >= size){
+				return row;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @param size
+	 * @return largest free row if it holds the size
+	 */
+	private int findWorstFit(long size) {
+		int row = freeBySize.last();
+		if(row == NONE || rowSize[row] < size){
+			return NONE;
+		}
+		//Lowest address among the largest blocks, like DynamicMemory
+		return freeBySize.ceiling(rowSize[row], Long.MIN_VALUE);
+	}
+
+	/**
+	 * @param size
+	 * @return first free row that holds the size starting at the last allocation and wrapping around
+	 */
+	private int findNextFit(long size) {
+		//Start at the free row holding the rover, or the first one above it
+		int start = freeByAddress.floor(lastAllocated, 0);
+		if(start == NONE || rowAddress[start] + rowSize[start] <= lastAllocated){
+			start = freeByAddress.ceiling(lastAllocated, 0);
+		}
+		long from = start == NONE ? lastAllocated : rowAddress[start];
+		for(int row = start; row != NONE; row = freeByAddress.higher(row)){
+			if(rowSize[row] >= size){
+				return row;
+			}
+		}
+		for(int row = freeByAddress.first(); row != NONE && rowAddress[row] < from; row = freeByAddress.higher(row)){
+			if(rowSize[row] >= size){
+				return row;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Splits the row into the job's part and a free remainder right after it
+	 * @param row
+	 * @param newJob
+	 */
+	private void allocate(int row, Job newJob) {
+		removeFree(row);
+		long remaining = rowSize[row] - newJob.getSize();
+		if(remaining > 0){
+			int rest = newRow(rowAddress[row] + newJob.getSize(), remaining);
+			rowPrev[rest] = row;
+			rowNext[rest] = rowNext[row];
+			if(rowNext[row] != NONE){
+				rowPrev[rowNext[row]] = rest;
+			}
+			rowNext[row] = rest;
+			rowSize[row] = newJob.getSize();
+			addFree(rest);
+		}
+		rowFree[row] = false;
+		rowJob[row] = newJob.getId();
+		//Next fit carries on right after this job
+		lastAllocated = rowAddress[row] + newJob.getSize();
+		liveJobs.add(newJob.getId(), row);
+		usedSize += rowSize[row];
+		allocations++;
+		newJob.placed();
+	}
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = liveJobs.randomId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Simulates a job completing
+	 * Frees the job's row and merges it with free neighbours,
+	 * then checks to see if anything in the Wait Queue can be assigned
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		if(verbose){
+			System.out.println("\n***REMOVE JOB " + id);
+		}
+		int row = liveJobs.remove(id);
+		if(row == NONE){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+			}
+			return false;
+		}
+		rowFree[row] = true;
+		rowJob[row] = 0;
+		usedSize -= rowSize[row];
+		deallocate(row);
+		checkWaitQueue();
+		return true;
+	}
+
+	/**
+	 * Joins the row with a free row after it and a free row before it
+	 * @param row
+	 */
+	private void deallocate(int row) {
+		int higher = rowNext[row];
+		if(higher != NONE && rowFree[higher]){
+			removeFree(higher);
+			rowSize[row] += rowSize[higher];
+			releaseRow(higher);
+		}
+		int lower = rowPrev[row];
+		if(lower != NONE && rowFree[lower]){
+			removeFree(lower);
+			rowSize[lower] += rowSize[row];
+			releaseRow(row);
+			row = lower;
+		}
+		addFree(row);
+	}
+
+	/**
+	 * called after memory is deallocated
+	 * Admits every waiting job that now fits, largest first, using First Fit
+	 */
+	private void checkWaitQueue() {
+		Job j;
+		while((j = waitJobs.pollFloor(getLargestFreeBlock())) != null){
+			allocate(findFirstFit(j.getSize()), j);
+		}
+	}
+
+	public boolean isEmpty(){
+		return liveJobs.isEmpty();
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		return usedSize;
+	}
+
+	/**
+	 * @return size of the largest free block, 0 if memory is full
+	 */
+	public long getLargestFreeBlock() {
+		int largest = freeBySize.last();
+		if(largest == NONE){
+			return 0;
+		}
+		return rowSize[largest];
+	}
+
+	/**
+	 * @return free memory outside the largest free block
+	 */
+	public long getFragmentation() {
+		return totalSize - usedSize - getLargestFreeBlock();
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+}
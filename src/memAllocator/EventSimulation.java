@@ -0,0 +1,200 @@
+package memAllocator;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Discrete event simulation on a virtual clock. Jobs arrive at their arrival time,
+ * run for their duration once placed, and complete from a priority queue of completion events.
+ * A job that has to wait starts when the memory places it from its wait queue, which the job's
+ * placement listener reports, and the time it waited is recorded.
+ * Only the next arrival is generated ahead, so the queue holds just the running jobs.
+ */
+public class EventSimulation {
+
+	static final double MEAN_INTERARRIVAL = 1;
+	static final double MEAN_DURATION = 2;
+
+	/**
+	 * A running job and the time it completes
+	 */
+	private static class Completion implements Comparable<Completion> {
+		private final long time;
+		//Start order, so completions at the same time run in a repeatable order
+		private final long order;
+		private final Job job;
+
+		private Completion(long time, long order, Job job) {
+			this.time = time;
+			this.order = order;
+			this.job = job;
+		}
+
+		@Override
+		public int compareTo(Completion other) {
+			if(time != other.time){
+				return Long.compare(time, other.time);
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+
+	private MemoryModule mem;
+	private Algorithm algo;
+	private PriorityQueue<Completion> completions;
+	private Consumer<Job> onPlaced;
+	private long clock;
+	private long arrived;
+	private long started;
+	private long completed;
+	private Histogram waitTimes;
+
+	/**
+	 * @param args job config, fixed partition config, optional mean time between arrivals and mean job duration
+	 */
+	public static void main(String[] args) throws IOException {
+		MemoryTester.jobBuilder(args[0]);
+		double meanInterarrival = args.length > 2 ? Double.parseDouble(args[2]) : MEAN_INTERARRIVAL;
+		double meanDuration = args.length > 3 ? Double.parseDouble(args[3]) : MEAN_DURATION;
+
+		System.out.println("+Event Simulation, mean interarrival " + meanInterarrival + ", mean duration " + meanDuration);
+		String leftAlignFormat = "| %-7s | %-9s | %-9s | %-9s | %-8s | %-8s | %-8s | %-8s | %-8s |%n";
+		String line = "+---------+-----------+-----------+-----------+----------+----------+----------+----------+----------+%n";
+		System.out.format(line);
+		System.out.format(leftAlignFormat, "Memory", "Algorithm", "Completed", "Jobs/Time", "Wait p50", "Wait p90", "Wait p99", "Wait Max", "Unplaced");
+		System.out.format(line);
+		for(Algorithm algo : Algorithm.values()){
+			if(algo.isFit()){
+				FixedMemory fix = new FixedMemory(MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS, args[1]);
+				run(fix, algo, meanInterarrival, meanDuration).printRow(leftAlignFormat, "FIXED");
+			}
+			MemoryModule dyn = MemoryTester.dynamicMemory(algo, MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS, false);
+			run(dyn, algo, meanInterarrival, meanDuration).printRow(leftAlignFormat, "DYNAMIC");
+		}
+		System.out.format(line);
+	}
+
+	/**
+	 * Runs the configured job sequence with the given timing
+	 * @param mem
+	 * @param algo
+	 * @param meanInterarrival
+	 * @param meanDuration
+	 * @return the finished simulation
+	 */
+	private static EventSimulation run(MemoryModule mem, Algorithm algo, double meanInterarrival, double meanDuration) {
+		Workload workload = MemoryTester.workload();
+		workload.setTiming(meanInterarrival, meanDuration);
+		EventSimulation simulation = new EventSimulation(mem, algo);
+		simulation.run(workload);
+		return simulation;
+	}
+
+	public EventSimulation(MemoryModule mem, Algorithm algo) {
+		this.mem = mem;
+		this.algo = algo;
+		mem.setVerbose(false);
+		completions = new PriorityQueue<Completion>();
+		onPlaced = this::start;
+		waitTimes = new Histogram();
+	}
+
+	/**
+	 * Runs until every job has arrived and every placed job has completed.
+	 * Jobs that never find room are left waiting.
+	 * @param workload a workload with timing set
+	 */
+	public void run(Workload workload) {
+		Job nextArrival = workload.hasNext() ? workload.next() : null;
+		while(nextArrival != null || !completions.isEmpty()){
+			//Completions at the same time go first, so an arrival sees the memory they free
+			if(nextArrival != null && (completions.isEmpty() || nextArrival.getArrival() < completions.peek().time)){
+				clock = nextArrival.getArrival();
+				arrive(nextArrival);
+				nextArrival = workload.hasNext() ? workload.next() : null;
+			}
+			else {
+				Completion completion = completions.poll();
+				clock = completion.time;
+				complete(completion.job);
+			}
+		}
+	}
+
+	private void arrive(Job job) {
+		arrived++;
+		job.setPlacementListener(onPlaced);
+		mem.addJob(algo, job);
+	}
+
+	/**
+	 * Removing the job lets the memory place waiting jobs, which start through the listener
+	 * @param job
+	 */
+	private void complete(Job job) {
+		mem.removeJob(job.getId());
+		completed++;
+	}
+
+	/**
+	 * Schedules the completion of a job the memory just placed
+	 * @param job
+	 */
+	private void start(Job job) {
+		job.setPlacementListener(null);
+		waitTimes.record(clock - job.getArrival());
+		completions.add(new Completion(clock + job.getDuration(), started++, job));
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return virtual time of the last event
+	 */
+	public long getClock() {
+		return clock;
+	}
+
+	/**
+	 * @return completed jobs per unit of virtual time
+	 */
+	public double getThroughput() {
+		return clock == 0 ? 0 : (double) completed / clock;
+	}
+
+	/**
+	 * @param percent
+	 * @return wait time of the placed jobs at the given percentile
+	 */
+	public long getWaitPercentile(double percent) {
+		return waitTimes.percentile(percent);
+	}
+
+	public long getMaxWait() {
+		return waitTimes.getMax();
+	}
+
+	/**
+	 * @return jobs still waiting at the end, too large for any room the memory ever had
+	 */
+	public long getUnplaced() {
+		return arrived - started;
+	}
+
+	/**
+	 * Prints one line of the summary table
+	 * @param format
+	 * @param kind
+	 */
+	private void printRow(String format, String kind) {
+		System.out.format(format, kind, algo.name().replace("_FIT", ""), completed, String.format("%.4f", getThroughput()),
+				getWaitPercentile(50), getWaitPercentile(90), getWaitPercentile(99), getMaxWait(), getUnplaced());
+	}
+}
@@ -1,72 +1,225 @@
 package memAllocator;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayDeque;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 
+import memAllocator.Instrumentation.Probe;
 import memAllocator.MemoryTester.Algorithm;
 
 /**
  * @author Ryan Ceresani
  *
  */
-public class FixedMemory{
+public class FixedMemory implements MemoryModule, MemoryMetricsMBean{
 
-	private static String CONFIG_NAME ;
+	private String configName;
 	private long totalSize;
-	private LinkedList<Partition> partitions;
-	private ArrayDeque<Job> waitJobs;
+	private ArrayList<Partition> partitions;
+	private WaitQueue waitJobs;
 	private long address;
-	private HashMap<Integer, Partition> jobMap;
-	private TreeMap<Long, Partition> freeList;
-	private long lastAlotted;
+	//Ids of the jobs in memory, each with the index of its partition
+	private LiveJobSet liveJobs;
+	//Free partitions by size, for the fit algorithms
+	private FreePartitions freePartitions;
+	private long freeSize;
+	//Index of the partition after the most recently allotted one, where next fit starts
+	private int lastAlotted;
+	private long usedSize;
+	//Sum of the space left unused inside busy partitions
+	private long fragmentation;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
 
 	public FixedMemory(long size, long memAddress, String configName){
-		CONFIG_NAME = configName;
+		this(size, memAddress);
+		this.configName = configName;
+		HashSet<Long> sizes = new HashSet<Long>();
+		loadPartitions(configName, memAddress, partitions, sizes);
+		indexFree(sizes);
+	}
+
+	/**
+	 * Memory without partitions yet
+	 * @param size
+	 * @param memAddress
+	 */
+	private FixedMemory(long size, long memAddress){
 		totalSize = size;
 		this.address = memAddress;
-		partitions = new LinkedList<Partition>();
-		waitJobs = new ArrayDeque<Job>();
-		jobMap = new HashMap<Integer, Partition>();
-		freeList = new TreeMap<Long, Partition>();
-		loadPartitions();
+		partitions = new ArrayList<Partition>();
+		waitJobs = new WaitQueue();
+		liveJobs = new LiveJobSet();
 		lastAlotted = 0;
 	}
 
 	/**
-	 * Imports the partition sizes from a config file. 
-	 * File will just be a text file with partition sizes.
+	 * Builds the free partition index for the loaded partitions and adds the free ones to it.
+	 * The total size becomes the sum of the partitions, which need not match the size asked for.
+	 * @param sizes every distinct partition size
+	 */
+	private void indexFree(HashSet<Long> sizes) {
+		long[] sortedSizes = new long[sizes.size()];
+		int i = 0;
+		for(long partitionSize : sizes){
+			sortedSizes[i++] = partitionSize;
+		}
+		Arrays.sort(sortedSizes);
+		//Pools of many equally sized partitions are kept as bitmaps
+		if(SlotBitmaps.suits(partitions.size(), sortedSizes.length)){
+			freePartitions = new SlotBitmaps(partitions, sortedSizes);
+		}
+		else {
+			freePartitions = new SizeBuckets(partitions, sortedSizes);
+		}
+		totalSize = 0;
+		for (int index = 0; index < partitions.size(); index++) {
+			totalSize += partitions.get(index).getSize();
+			if(partitions.get(index).isFree()){
+				addFree(index);
+			}
+		}
+	}
+
+	/**
+	 * Writes the partitions in address order with their jobs, the wait queue, the next fit rover and the counters
+	 * @param fileName
+	 */
+	public void checkpoint(String fileName) throws IOException {
+		DataOutputStream out = Checkpoint.create(fileName, Checkpoint.FIXED);
+		try {
+			out.writeLong(totalSize);
+			out.writeLong(address);
+			out.writeInt(lastAlotted);
+			out.writeLong(usedSize);
+			out.writeLong(fragmentation);
+			out.writeInt(allocations);
+			out.writeInt(waits);
+			out.writeInt(partitions.size());
+			for(Partition p : partitions){
+				out.writeLong(p.getSize());
+				Checkpoint.writeJob(out, p.isFree() ? null : p.getCurrentJob());
+			}
+			out.writeInt(waitJobs.size());
+			for(Job j : waitJobs){
+				Checkpoint.writeJob(out, j);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Rebuilds a memory from a checkpoint instead of its partition config
+	 * @param fileName
+	 * @return the restored memory
 	 */
-	private void loadPartitions(){
-		long currentMemAddress = address;
+	public static FixedMemory restore(String fileName) throws IOException {
+		DataInputStream in = Checkpoint.open(fileName, Checkpoint.FIXED);
 		try {
-			File file = new File(CONFIG_NAME);
-			BufferedReader br = new BufferedReader(new FileReader(file));
+			FixedMemory mem = new FixedMemory(in.readLong(), in.readLong());
+			mem.configName = fileName;
+			mem.lastAlotted = in.readInt();
+			mem.usedSize = in.readLong();
+			mem.fragmentation = in.readLong();
+			mem.allocations = in.readInt();
+			mem.waits = in.readInt();
+			int count = in.readInt();
+			mem.partitions.ensureCapacity(count);
+			HashSet<Long> sizes = new HashSet<Long>();
+			long currentMemAddress = mem.address;
+			for (int index = 0; index < count; index++) {
+				Partition p = new Partition(in.readLong(), currentMemAddress);
+				Job job = Checkpoint.readJob(in);
+				if(job != null){
+					p.setCurrentJob(job);
+					mem.liveJobs.add(job.getId(), index);
+				}
+				mem.partitions.add(p);
+				sizes.add(p.getSize());
+				currentMemAddress += p.getSize();
+			}
+			mem.indexFree(sizes);
+			int waiting = in.readInt();
+			for (int i = 0; i < waiting; i++) {
+				mem.waitJobs.add(Checkpoint.readJob(in));
+			}
+			return mem;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Imports the partition sizes from a config file. 
+	 * Each line is either one partition size or "count x size" for that many partitions of the size.
+	 * The file is read a line at a time so large pools do not have to fit in memory as text.
+	 * Counts and sizes must be at least 1, a bad line fails with its line number rather than leaving the memory short.
+	 * @param configName
+	 * @param memAddress address of the first partition
+	 * @param partitions receives the partitions in address order
+	 * @param sizes collects every distinct partition size
+	 */
+	static void loadPartitions(String configName, long memAddress, ArrayList<Partition> partitions, HashSet<Long> sizes){
+		long currentMemAddress = memAddress;
+		try (BufferedReader br = new BufferedReader(new FileReader(new File(configName)))) {
 			String line;
+			int lineNumber = 0;
 			while((line = br.readLine()) != null){
-				long size = Long.parseLong(line);
-				Partition p = new Partition(size, currentMemAddress);
-				partitions.add(p);
-				freeList.put(p.getMemAddress(), p);
-				currentMemAddress += size;
+				lineNumber++;
+				line = line.trim();
+				if(line.isEmpty()){
+					continue;
+				}
+				long count = 1;
+				long size;
+				try {
+					int times = line.indexOf('x');
+					if(times >= 0){
+						count = Long.parseLong(line.substring(0, times).trim());
+						size = Long.parseLong(line.substring(times + 1).trim());
+					}
+					else {
+						size = Long.parseLong(line);
+					}
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(configName + " line " + lineNumber + ": not a size or count x size: " + line);
+				}
+				if(count < 1 || size < 1){
+					throw new IllegalArgumentException(configName + " line " + lineNumber + ": count and size must be at least 1: " + line);
+				}
+				sizes.add(size);
+				for (long i = 0; i < count; i++) {
+					partitions.add(new Partition(size, currentMemAddress));
+					currentMemAddress += size;
+				}
 			} 
 		} catch (IOException e) {
-			// TODO: handle exception
-			System.out.println("IO Exception: ");
-			e.printStackTrace();
+			throw new UncheckedIOException(e);
 		}
 	}
 
+	private void addFree(int index) {
+		freePartitions.add(index);
+		freeSize += partitions.get(index).getSize();
+	}
+
+	private void removeFree(int index) {
+		freePartitions.remove(index);
+		freeSize -= partitions.get(index).getSize();
+	}
+
 	public void printAll(){
 		printPartitions();
 		printSnapShot();
@@ -95,12 +248,14 @@ public class FixedMemory{
 		System.out.format("+----------------------+%n");
 		System.out.format("| Memory Stack         |%n");
 		System.out.format("+----------------------+%n");
+		int index = 0;
 		Iterator<Partition> it = partitions.iterator();
 		while(it.hasNext()){
 			Partition p = it.next();
+			index++;
 			if(p.isFree()){
 				long breaks = p.getSize()/10;
-				System.out.format(leftAlignFormat, "Partition " + (partitions.indexOf(p)+1) + " = " + p.getSize() + "k");
+				System.out.format(leftAlignFormat, "Partition " + index + " = " + p.getSize() + "k");
 				System.out.format(leftAlignFormat, "Status: " + p.getStatus());
 				for (int i = 0; i < breaks; i++) {
 					System.out.format(leftAlignFormat, "","%n");
@@ -116,7 +271,7 @@ public class FixedMemory{
 				}
 				System.out.format("+......................+%n");
 				if(p.getFragmentation() > 0){
-					System.out.format(leftAlignFormat, "Partition " + (partitions.indexOf(p)+1));;
+					System.out.format(leftAlignFormat, "Partition " + index);
 					System.out.format(leftAlignFormat, " has " + p.getFragmentation() + "k frag");
 				}
 				for (int i = 0; i < breaks; i++) {
@@ -127,6 +282,14 @@ public class FixedMemory{
 		}
 
 	}
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("Fixed Partition", totalSize);
+		for(Partition p : partitions){
+			snapshot.block(p.getMemAddress(), p.getSize(), p.isFree() ? null : p.getCurrentJob());
+		}
+		return snapshot.waiting(waitJobs).build();
+	}
+
 	public void printWaitQueue(){
 		if(waitJobs.isEmpty()){
 			System.out.println();
@@ -166,61 +329,94 @@ public class FixedMemory{
 	}
 
 	/**
-	 * BestFit Memory Allocation for Dynamic Memory
-	 * Finds closest matchin place to the incoming job (if any) and assigns it there.
-	 * @param newJob
+	 * Places a burst of jobs together, largest first, so the big jobs get the big partitions.
+	 * First fit decreasing is done in one pass over the partitions: each free partition in address order
+	 * takes the largest batch job that fits it, which is where first fitting the jobs one at a time
+	 * from largest to smallest would put them.
+	 * The other algorithms place the sorted jobs one at a time, so best fit becomes best fit decreasing.
+	 * A job larger than every free partition is queued without a search, and once no
+	 * partition is free the rest of the batch goes straight to the wait queue.
+	 * @param algorithmID
+	 * @param jobs
 	 */
-	private void addBestFit(Job newJob){
-		Long bestFit = null;
-		Partition bestFitPart = null;
-		//Iterate through list of free spaces
-		for(Long address : freeList.keySet()){
-			Partition currPart = freeList.get(address);
-			if(currPart.canFit(newJob)){
-				long testFit = currPart.getSize() - newJob.getSize();
-				//Check if there is no fit yet, if the fit is perfect, or its smaller than current best fit
-				if(bestFit == null || testFit == 0 || testFit < bestFit) {
-					bestFitPart = currPart;
-					bestFit = testFit;
-				}
+	public void addJobs(Algorithm algorithmID, Collection<Job> jobs){
+		if(algorithmID == Algorithm.FIRST_FIT){
+			addFirstFitDecreasing(jobs);
+			return;
+		}
+		for(Job newJob : Job.largestFirst(jobs)){
+			if(newJob.getSize() > freePartitions.largest()){
+				queueJob(newJob);
 			}
+			else {
+				addJob(algorithmID, newJob);
+			}
+		}
+	}
 
+	/**
+	 * Fills the free partitions in address order from the batch, queueing what is left
+	 * @param jobs
+	 */
+	private void addFirstFitDecreasing(Collection<Job> jobs){
+		//The batch indexed by size, so the largest job that fits a partition is one floor lookup
+		WaitQueue batch = new WaitQueue();
+		for(Job newJob : jobs){
+			batch.add(newJob);
+		}
+		for (int index = 0; index < partitions.size() && !batch.isEmpty()
+				&& batch.smallestSize() <= freePartitions.largest(); index++) {
+			Partition currPart = partitions.get(index);
+			if(currPart.isFree()){
+				Job newJob = batch.pollFloor(currPart.getSize());
+				if(newJob != null){
+					allocate(index, newJob);
+				}
+			}
 		}
+		for(Job newJob : batch){
+			queueJob(newJob);
+		}
+	}
+
+	/**
+	 * BestFit Memory Allocation for Fixed Memory
+	 * Finds closest matchin place to the incoming job (if any) and assigns it there.
+	 * The smallest size bucket that holds the job gives its lowest addressed free partition.
+	 * @param newJob
+	 */
+	private void addBestFit(Job newJob){
+		long start = Instrumentation.start();
+		int bestFitPart = freePartitions.bestFit(newJob.getSize());
+		Instrumentation.stop(Probe.FIXED_FIT, start);
+		Instrumentation.record(Probe.FIXED_SEARCH, freePartitions.examined());
 		//If no fit was found, job goes to wait queue
-		if(bestFitPart == null){
-			waitJobs.add(newJob);
+		if(bestFitPart == FreePartitions.NONE){
+			queueJob(newJob);
 		}
 		//Fit was found
 		else {
-			//Map job to partition it is in for easy access later
-			jobMap.put(newJob.getId(), bestFitPart);
-			//Set the partitions current job
-			bestFitPart.setCurrentJob(newJob);
-			//remove the location from the free list
-			freeList.remove(bestFitPart.getMemAddress());
+			allocate(bestFitPart, newJob);
 		}
 	}
 
 	/**
-	 * First Fit Memory Allocation for Dynamic Memory
+	 * First Fit Memory Allocation for Fixed Memory
 	 * Finds first matching place for the incoming job (if any) and assigns it there.
+	 * The lowest free address among the buckets that hold the job is the first fit.
 	 * @param newJob
 	 */
 	private void addFirstFit(Job newJob){
-		for(Long address : freeList.keySet()){
-			Partition currPart = freeList.get(address);
-			if(currPart.canFit(newJob)){
-				//Set the partitions current job
-				currPart.setCurrentJob(newJob);
-				//Map job to partition it is in for easy access later
-				jobMap.put(newJob.getId(), currPart);
-				//remove the location from the free list
-				freeList.remove(currPart.getMemAddress());
-				//Match found, we can immediately exit the method
-				return;
-			}
+		long start = Instrumentation.start();
+		int firstFitPart = freePartitions.firstFit(newJob.getSize());
+		Instrumentation.stop(Probe.FIXED_FIT, start);
+		Instrumentation.record(Probe.FIXED_SEARCH, freePartitions.examined());
+		if(firstFitPart == FreePartitions.NONE){
+			queueJob(newJob);
+		}
+		else {
+			allocate(firstFitPart, newJob);
 		}
-		waitJobs.add(newJob);
 	}
 
 	/**
@@ -228,109 +424,190 @@ public class FixedMemory{
 	 * @param newJob
 	 */
 	private void addWorstFit(Job newJob){
-		Long worstFit = null;
-		Partition worstFitPart = null;
-		for(Long address : freeList.keySet()){
-			Partition currPart = freeList.get(address);
-			if(currPart.canFit(newJob)){
-				long testFit = currPart.getSize() - newJob.getSize();
-				if(worstFit == null || testFit == 0 || testFit > worstFit) {
-					worstFitPart = currPart;
-					worstFit = testFit;
-				}
-			}
-		}
-		if(worstFitPart == null){
-			waitJobs.add(newJob);
+		long start = Instrumentation.start();
+		int worstFitPart = freePartitions.worstFit(newJob.getSize());
+		Instrumentation.stop(Probe.FIXED_FIT, start);
+		Instrumentation.record(Probe.FIXED_SEARCH, freePartitions.examined());
+		if(worstFitPart == FreePartitions.NONE){
+			queueJob(newJob);
 		}
 		else {
-			jobMap.put(newJob.getId(), worstFitPart);
-			worstFitPart.setCurrentJob(newJob);
-			freeList.remove(worstFitPart.getMemAddress());
+			allocate(worstFitPart, newJob);
 		}
 	}
 
 	/**
-	 * Same as First Fit but starts at the most recently allocated partition and works around
+	 * Same as First Fit but starts at the partition after the most recently allocated one and works around
 	 * @param newJob
 	 */
 	private void addNextFit(Job newJob){
-		//Iterate to the end of the Free Space list, starting at the desired location.
-		Iterator<Map.Entry<Long,Partition>> iter = freeList.tailMap(lastAlotted).entrySet().iterator();
-		while (iter.hasNext()){
-			Map.Entry<Long, Partition> entry = iter.next();
-			Partition currPart = entry.getValue();
-			if(currPart.isFree()){
-				if(currPart.canFit(newJob)){
-					currPart.setCurrentJob(newJob);
-					jobMap.put(newJob.getId(), currPart);
-					freeList.remove(currPart.getMemAddress());
-					return;
-				}
-			}
+		long start = Instrumentation.start();
+		int nextFitPart = freePartitions.nextFit(newJob.getSize(), lastAlotted);
+		Instrumentation.stop(Probe.FIXED_FIT, start);
+		Instrumentation.record(Probe.FIXED_SEARCH, freePartitions.examined());
+		if(nextFitPart == FreePartitions.NONE){
+			queueJob(newJob);
 		}
-		//If nothing found to the end, go from the beginning to the original space to complete full traversal
-		iter = freeList.headMap(lastAlotted).entrySet().iterator();
-		while (iter.hasNext()){
-			Map.Entry<Long, Partition>entry = iter.next();
-			Partition currPart = entry.getValue();
-			if(currPart.isFree()){
-				if(currPart.canFit(newJob)){
-					currPart.setCurrentJob(newJob);
-					jobMap.put(newJob.getId(), currPart);
-					freeList.remove(currPart.getMemAddress());
-					return;
-				}
-			}
+		else {
+			allocate(nextFitPart, newJob);
 		}
-		waitJobs.add(newJob);
 	}	
 	
+	/**
+	 * Puts the job in the partition, maps it for easy access later
+	 * and removes the partition from the free partitions
+	 * @param index of the partition
+	 * @param newJob
+	 */
+	private void allocate(int index, Job newJob) {
+		Partition part = partitions.get(index);
+		part.setCurrentJob(newJob);
+		//Next fit carries on at the partition after this one
+		lastAlotted = index + 1;
+		liveJobs.add(newJob.getId(), index);
+		removeFree(index);
+		usedSize += newJob.getSize();
+		fragmentation += part.getFragmentation();
+		allocations++;
+		newJob.placed();
+	}
+
+	/**
+	 * Puts a job that has no space in the wait queue
+	 * @param newJob
+	 */
+	private void queueJob(Job newJob) {
+		waitJobs.add(newJob);
+		Instrumentation.record(Probe.QUEUED, waitJobs.size());
+		waits++;
+	}
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = liveJobs.randomId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
+	}
+
 	/**
 	 * Simulates a job completing
-	 * Removes it from the active job map, sets the partitions job to null, 
-	 * updates the free list, and then checks to see if anything in the Wait Queue can be assigned
+	 * Removes it from the live jobs, sets the partitions job to null, 
+	 * updates the free partitions, and then checks to see if anything in the Wait Queue can be assigned
 	 * @param id
+	 * @return if the job was found in memory
 	 */
-	public void removeJob(){
-		List<Integer> keysAsArray = new ArrayList<Integer>(jobMap.keySet());
-		int rand = ThreadLocalRandom.current().nextInt(keysAsArray.size());
-		int id = keysAsArray.get(rand);
-		try{
-			Partition p = jobMap.get(id);
-			jobMap.remove(id);
-			p.setCurrentJob(null);
-			freeList.put(p.getMemAddress(), p);
-			if(!waitJobs.isEmpty()) {checkWaitQueue();}
-		} catch (NullPointerException e) {
-			System.out.println("Job with ID " + id + "  was not found.");
-			System.out.println("No job was removed.");
+	public boolean removeJob(int id){
+		int index = liveJobs.remove(id);
+		if(index == -1){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found.");
+				System.out.println("No job was removed.");
+			}
+			return false;
 		}
-
+		Partition p = partitions.get(index);
+		usedSize -= p.getCurrentJob().getSize();
+		fragmentation -= p.getFragmentation();
+		p.setCurrentJob(null);
+		addFree(index);
+		if(!waitJobs.isEmpty()) {
+			long start = Instrumentation.start();
+			checkWaitQueue(index);
+			Instrumentation.stop(Probe.WAIT_CHECK, start);
+		}
+		return true;
 	}
 
 	/**
 	 * called after memory is deallocated
-	 * Since the memory state has changed, it iterates through the waiting jobs to see if any can now fit.
-	 * If they can it adds them to the spot using First Fit
+	 * Every other free partition was already too small for the waiting jobs,
+	 * so only the freed partition can take one: the largest waiting job that fits it.
+	 * @param freed index of the freed partition
 	 */
-	private void checkWaitQueue() {
-		Iterator<Job> it = waitJobs.iterator();
-		while(it.hasNext()){
-			Job j = it.next();
-			for (Long address : freeList.keySet()) {
-				Partition currPart = freeList.get(address);
-				if(currPart.canFit(j)){
-					addFirstFit(j);
-					it.remove();
-					return;
-				}
-			}
+	private void checkWaitQueue(int freed) {
+		Job j = waitJobs.pollFloor(partitions.get(freed).getSize());
+		if(j != null){
+			allocate(freed, j);
 		}
-
 	}
 	
 	public boolean isEmpty(){
-		return jobMap.isEmpty();
+		return liveJobs.isEmpty();
+	}
+
+	/**
+	 * Fixed memory only prints when a job to remove is not found
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * @return memory taken by the jobs themselves
+	 */
+	public long getUsedSize() {
+		return usedSize;
+	}
+
+	/**
+	 * @return internal fragmentation of all busy partitions
+	 */
+	public long getFragmentation() {
+		return fragmentation;
+	}
+
+	public long getFreeSize() {
+		return freeSize;
+	}
+
+	/**
+	 * @return size of the largest free partition, 0 if every partition is busy
+	 */
+	public long getLargestFreeBlock() {
+		return freePartitions.largest();
+	}
+
+	public int getFreeBlockCount() {
+		return freePartitions.count();
+	}
+
+	/**
+	 * @return free partition space outside the largest free partition
+	 */
+	public long getExternalFragmentation() {
+		return freeSize - freePartitions.largest();
+	}
+
+	public long getInternalFragmentation() {
+		return fragmentation;
+	}
+
+	public double getUtilization() {
+		return (double) usedSize / totalSize;
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
 	}
 }
@@ -0,0 +1,57 @@
+package memAllocator;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * The free partitions of a fixed memory and the searches the fit algorithms run on them.
+ * Partitions are named by their index in address order, and since they never change size
+ * every implementation knows the partition sizes up front.
+ */
+interface FreePartitions {
+
+	static final int NONE = -1;
+
+	void add(int index);
+
+	void remove(int index);
+
+	/**
+	 * @param size
+	 * @return the free partition with the lowest address that holds the size, or NONE
+	 */
+	int firstFit(long size);
+
+	/**
+	 * @param size
+	 * @return the lowest addressed free partition of the smallest size that holds the size, or NONE
+	 */
+	int bestFit(long size);
+
+	/**
+	 * @param size
+	 * @return the lowest addressed free partition of the largest size, or NONE if it cannot hold the size
+	 */
+	int worstFit(long size);
+
+	/**
+	 * @param size
+	 * @param rover index to start from
+	 * @return the first free partition at or above the rover that holds the size, wrapping around to the bottom, or NONE
+	 */
+	int nextFit(long size, int rover);
+
+	/**
+	 * @return index entries (buckets, tree nodes or slot groups) the last fit search read
+	 */
+	int examined();
+
+	/**
+	 * @return size of the largest free partition, 0 if none is free
+	 */
+	long largest();
+
+	/**
+	 * @return number of free partitions
+	 */
+	int count();
+}
@@ -0,0 +1,92 @@
+package memAllocator;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Counts of non negative values in log-linear buckets, for percentiles without keeping every value.
+ * Values below 32 get a bucket each, and every power of two above that is split into 32 buckets,
+ * so a percentile is within about 3% of the true value whatever the range, in a fixed 15KB.
+ */
+class Histogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private long[] counts = new long[(64 - SUB_BITS + 1) << SUB_BITS];
+	private long count;
+	private long total;
+	private long max;
+
+	private static int bucketOf(long value) {
+		if(value < SUB_BUCKETS){
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * @param bucket
+	 * @return the largest value that falls in the bucket
+	 */
+	private static long highestIn(int bucket) {
+		if(bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BITS) - 1;
+		long sub = bucket & (SUB_BUCKETS - 1);
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	void record(long value) {
+		counts[bucketOf(value)]++;
+		count++;
+		total += value;
+		if(value > max){
+			max = value;
+		}
+	}
+
+	/**
+	 * Adds another histogram's values to this one, so threads can record separately and merge at the end
+	 * @param other
+	 */
+	void add(Histogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		total += other.total;
+		if(other.max > max){
+			max = other.max;
+		}
+	}
+
+	long getCount() {
+		return count;
+	}
+
+	long getMax() {
+		return max;
+	}
+
+	double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * @param percent between 0 and 100
+	 * @return the value that many percent of the recorded values are at or below, 0 if nothing was recorded
+	 */
+	long percentile(double percent) {
+		long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank){
+				return Math.min(highestIn(i), max);
+			}
+		}
+		return 0;
+	}
+}
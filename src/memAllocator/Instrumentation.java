@@ -0,0 +1,226 @@
+package memAllocator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Counters and histograms of what the allocators spend their time on.
+ * Turned on with -DmemAllocator.instrument=true. ENABLED is a constant, so when it is off
+ * the JIT drops every probe and instrumentation costs nothing.
+ * When on, each thread records into its own buffer without locking or sharing cache lines,
+ * and the buffers are only merged to dump them: at exit to the file named by
+ * -DmemAllocator.instrument.file (instrument.txt by default), or on demand through dump,
+ * which is also published over JMX.
+ * A thread that ends without calling flush is found once it has been collected,
+ * and its buffer is merged into the totals then, so pool threads need not flush.
+ */
+final class Instrumentation {
+
+	static final boolean ENABLED = Boolean.getBoolean("memAllocator.instrument");
+	static final String FILE = System.getProperty("memAllocator.instrument.file", "instrument.txt");
+
+	enum Probe {
+		FIT_SEARCH("free blocks examined per dynamic fit"),
+		FIXED_SEARCH("index entries examined per fixed fit"),
+		FIXED_FIT("ns per fixed partition search"),
+		DEALLOCATE("ns per dynamic deallocate and coalesce"),
+		WAIT_CHECK("ns per wait queue check after a remove"),
+		QUEUED("wait queue length as each job is queued");
+
+		private final String description;
+
+		Probe(String description) {
+			this.description = description;
+		}
+	}
+
+	/**
+	 * One thread's histograms, each made the first time the thread records to it
+	 */
+	private static class Buffer {
+		private final Histogram[] histograms = new Histogram[Probe.values().length];
+		private Owner owner;
+	}
+
+	/**
+	 * Holds a buffer for as long as its thread can still be reached,
+	 * and is queued on ended once the thread has been collected
+	 */
+	private static class Owner extends WeakReference<Thread> {
+		private final Buffer buffer;
+
+		private Owner(Thread thread, Buffer buffer) {
+			super(thread, ended);
+			this.buffer = buffer;
+		}
+	}
+
+	private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Instrumentation::register);
+	private static final ReferenceQueue<Thread> ended = new ReferenceQueue<Thread>();
+	//Owners of the buffers of threads still recording
+	private static final Set<Owner> live = new HashSet<Owner>();
+	//What the threads that flushed or ended had recorded
+	private static final Buffer retired = new Buffer();
+
+	static {
+		if(ENABLED){
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					dump(FILE);
+				} catch (IOException e) {
+					System.err.println("Could not write " + FILE + ": " + e.getMessage());
+				}
+			}, "instrumentation-dump"));
+		}
+	}
+
+	private Instrumentation() {
+	}
+
+	private static synchronized Buffer register() {
+		retireEnded();
+		Buffer buffer = new Buffer();
+		buffer.owner = new Owner(Thread.currentThread(), buffer);
+		live.add(buffer.owner);
+		return buffer;
+	}
+
+	/**
+	 * Merges the buffers of collected threads into the totals, the caller holds the class lock
+	 */
+	private static void retireEnded() {
+		Owner owner;
+		while((owner = (Owner) ended.poll()) != null){
+			if(live.remove(owner)){
+				merge(retired, owner.buffer);
+			}
+		}
+	}
+
+	/**
+	 * @param probe
+	 * @param value
+	 */
+	static void record(Probe probe, long value) {
+		if(!ENABLED){
+			return;
+		}
+		Histogram[] histograms = BUFFER.get().histograms;
+		Histogram histogram = histograms[probe.ordinal()];
+		if(histogram == null){
+			histogram = new Histogram();
+			histograms[probe.ordinal()] = histogram;
+		}
+		histogram.record(value);
+	}
+
+	/**
+	 * @return start of a timed section, passed to stop
+	 */
+	static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the nanoseconds since start
+	 * @param probe
+	 * @param start
+	 */
+	static void stop(Probe probe, long start) {
+		if(ENABLED){
+			record(probe, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Hands the calling thread's buffer over to the totals, for threads that are about to end
+	 */
+	static void flush() {
+		if(!ENABLED){
+			return;
+		}
+		Buffer buffer = BUFFER.get();
+		synchronized (Instrumentation.class) {
+			merge(retired, buffer);
+			live.remove(buffer.owner);
+			buffer.owner.clear();
+		}
+		BUFFER.remove();
+	}
+
+	private static void merge(Buffer into, Buffer from) {
+		for (int i = 0; i < from.histograms.length; i++) {
+			if(from.histograms[i] != null){
+				if(into.histograms[i] == null){
+					into.histograms[i] = new Histogram();
+				}
+				into.histograms[i].add(from.histograms[i]);
+			}
+		}
+	}
+
+	/**
+	 * Totals of every thread so far. Threads still recording are read without stopping them,
+	 * so their last few values may be missing.
+	 * @return the merged histogram of each probe that recorded anything
+	 */
+	static synchronized Map<Probe, Histogram> totals() {
+		retireEnded();
+		Buffer total = new Buffer();
+		merge(total, retired);
+		for(Owner owner : live){
+			merge(total, owner.buffer);
+		}
+		Map<Probe, Histogram> totals = new EnumMap<Probe, Histogram>(Probe.class);
+		for(Probe probe : Probe.values()){
+			if(total.histograms[probe.ordinal()] != null){
+				totals.put(probe, total.histograms[probe.ordinal()]);
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * Writes a row per probe with its count, mean, percentiles and max
+	 * @param fileName overwritten if it exists
+	 */
+	static void dump(String fileName) throws IOException {
+		String leftAlignFormat = "| %-12s | %-10s | %-10s | %-9s | %-9s | %-9s | %-10s | %-50s |%n";
+		String line = "+--------------+------------+------------+-----------+-----------+-----------+------------+----------------------------------------------------+%n";
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		try {
+			out.format(line);
+			out.format(leftAlignFormat, "Probe", "Count", "Mean", "p50", "p99", "p99.9", "Max", "Unit");
+			out.format(line);
+			for(Map.Entry<Probe, Histogram> total : totals().entrySet()){
+				Histogram h = total.getValue();
+				out.format(leftAlignFormat, total.getKey(), h.getCount(), String.format("%.1f", h.getMean()),
+						h.percentile(50), h.percentile(99), h.percentile(99.9), h.getMax(), total.getKey().description);
+			}
+			out.format(line);
+		} finally {
+			out.close();
+		}
+		if(out.checkError()){
+			throw new IOException("Could not write " + fileName);
+		}
+	}
+
+	/**
+	 * Lets a JMX console dump the instrumentation while a run is going
+	 */
+	static class Dumper implements InstrumentationMBean {
+		public void dump(String fileName) throws IOException {
+			Instrumentation.dump(fileName);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package memAllocator;
+
+import java.io.IOException;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * On demand dump of the allocator instrumentation, published over JMX by MetricsPublisher
+ */
+public interface InstrumentationMBean {
+
+	/**
+	 * Writes the instrumentation totals so far
+	 * @param fileName overwritten if it exists
+	 */
+	public void dump(String fileName) throws IOException;
+}
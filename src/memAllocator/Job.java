@@ -1,6 +1,9 @@
 package memAllocator;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * @author Ryan Ceresani
@@ -10,10 +13,24 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class Job {
 	private int size;
 	private int id;
+	//Virtual time the job arrives and how long it runs once placed, used by the event simulation
+	private long arrival;
+	private long duration;
+	//Told when a memory module places the job, null if nobody listens
+	private Consumer<Job> placementListener;
 	static AtomicInteger nextId = new AtomicInteger();
 
 	public Job(int size){
-		this.id = nextId.incrementAndGet();
+		this(size, nextId.incrementAndGet());
+	}
+
+	/**
+	 * A job with an id of the caller's choosing, leaving the shared id sequence alone
+	 * @param size
+	 * @param id
+	 */
+	Job(int size, int id){
+		this.id = id;
 		this.size = size;
 	}
 	public long getSize() {
@@ -26,6 +43,46 @@ public class Job {
 	public void setId(int id) {
 		this.id = id;
 	}
+
+	public long getArrival() {
+		return arrival;
+	}
+
+	public void setArrival(long arrival) {
+		this.arrival = arrival;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	public void setPlacementListener(Consumer<Job> placementListener) {
+		this.placementListener = placementListener;
+	}
+
+	/**
+	 * Called by the memory modules once the job has memory, whether on arrival or from the wait queue
+	 */
+	void placed() {
+		if(placementListener != null){
+			placementListener.accept(this);
+		}
+	}
+
+	/**
+	 * Orders a batch for the decreasing fit algorithms, jobs of equal size keep their order
+	 * @param jobs
+	 * @return the jobs from largest to smallest
+	 */
+	static Job[] largestFirst(Collection<Job> jobs) {
+		Job[] sorted = jobs.toArray(new Job[jobs.size()]);
+		Arrays.sort(sorted, (a, b) -> Integer.compare(b.size, a.size));
+		return sorted;
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,185 @@
+package memAllocator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Ids of the jobs currently in memory, each with an int the owner can attach (a row, a slot...).
+ * Ids are packed in an array so a random one is picked in constant time,
+ * and removal swaps the last id into the hole. An open addressing table maps an id to its position.
+ */
+class LiveJobSet {
+
+	private static final int EMPTY = -1;
+
+	//Packed ids and their attached values
+	private int[] ids;
+	private int[] values;
+	private int count;
+
+	//Open addressing table from id to position in ids, EMPTY marks a free bucket
+	private int[] bucketIds;
+	private int[] bucketPositions;
+	private int mask;
+	//Source for random picks, null uses the calling thread's random
+	private Random random;
+
+	LiveJobSet() {
+		ids = new int[16];
+		values = new int[16];
+		bucketIds = new int[32];
+		bucketPositions = new int[32];
+		Arrays.fill(bucketPositions, EMPTY);
+		mask = bucketIds.length - 1;
+	}
+
+	int size() {
+		return count;
+	}
+
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	private int bucketOf(int id) {
+		int h = id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @param id
+	 * @return the bucket holding the id, or the empty bucket where it would go
+	 */
+	private int find(int id) {
+		int b = bucketOf(id);
+		while(bucketPositions[b] != EMPTY && bucketIds[b] != id){
+			b = (b + 1) & mask;
+		}
+		return b;
+	}
+
+	boolean contains(int id) {
+		return bucketPositions[find(id)] != EMPTY;
+	}
+
+	/**
+	 * @param id
+	 * @return the value attached to the id, or -1 if it is not in the set
+	 */
+	int get(int id) {
+		int b = find(id);
+		if(bucketPositions[b] == EMPTY){
+			return EMPTY;
+		}
+		return values[bucketPositions[b]];
+	}
+
+	/**
+	 * Adds the id with its value, the id must not be in the set yet
+	 * @param id
+	 * @param value
+	 */
+	void add(int id, int value) {
+		if(count == ids.length){
+			ids = Arrays.copyOf(ids, count * 2);
+			values = Arrays.copyOf(values, count * 2);
+		}
+		if((count + 1) * 2 > bucketIds.length){
+			rehash(bucketIds.length * 2);
+		}
+		int b = find(id);
+		bucketIds[b] = id;
+		bucketPositions[b] = count;
+		ids[count] = id;
+		values[count] = value;
+		count++;
+	}
+
+	/**
+	 * Removes the id by moving the last id into its position
+	 * @param id
+	 * @return the value that was attached to the id, or -1 if it was not in the set
+	 */
+	int remove(int id) {
+		int b = find(id);
+		int position = bucketPositions[b];
+		if(position == EMPTY){
+			return EMPTY;
+		}
+		int value = values[position];
+		count--;
+		if(position != count){
+			int lastId = ids[count];
+			ids[position] = lastId;
+			values[position] = values[count];
+			bucketPositions[find(lastId)] = position;
+		}
+		deleteBucket(b);
+		return value;
+	}
+
+	/**
+	 * Empties the bucket and shifts later entries of the same probe run back,
+	 * so lookups never stop early at the hole
+	 * @param hole
+	 */
+	private void deleteBucket(int hole) {
+		bucketPositions[hole] = EMPTY;
+		int b = (hole + 1) & mask;
+		while(bucketPositions[b] != EMPTY){
+			int home = bucketOf(bucketIds[b]);
+			//Move the entry back if its home is not between the hole and its current bucket
+			if(((b - home) & mask) >= ((b - hole) & mask)){
+				bucketIds[hole] = bucketIds[b];
+				bucketPositions[hole] = bucketPositions[b];
+				bucketPositions[b] = EMPTY;
+				hole = b;
+			}
+			b = (b + 1) & mask;
+		}
+	}
+
+	private void rehash(int buckets) {
+		bucketIds = new int[buckets];
+		bucketPositions = new int[buckets];
+		Arrays.fill(bucketPositions, EMPTY);
+		mask = buckets - 1;
+		for (int i = 0; i < count; i++) {
+			int b = find(ids[i]);
+			bucketIds[b] = ids[i];
+			bucketPositions[b] = i;
+		}
+	}
+
+	/**
+	 * @param position from 0 to size - 1, positions change as ids are removed
+	 * @return the id at the position
+	 */
+	int idAt(int position) {
+		return ids[position];
+	}
+
+	/**
+	 * Makes random picks reproducible
+	 * @param random
+	 */
+	void setRandom(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * @return a random id in the set, EMPTY if the set is empty
+	 */
+	int randomId() {
+		if(count == 0){
+			return EMPTY;
+		}
+		if(random == null){
+			return ids[ThreadLocalRandom.current().nextInt(count)];
+		}
+		return ids[random.nextInt(count)];
+	}
+}
@@ -0,0 +1,153 @@
+package memAllocator;
+
+import java.util.concurrent.CountDownLatch;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Many clients adding and removing jobs on one shared memory at the same time.
+ * Each client runs its own seeded copy of the configured job sequence on its own thread,
+ * timing every add and remove into a histogram of its own, and the histograms are merged once all clients are done.
+ * All clients are released together so the memory sees the full load from the start.
+ */
+public class LoadDriver {
+
+	private MemoryModule mem;
+	private Algorithm algo;
+	private int clients;
+	private Histogram latencies;
+	private long elapsed;
+
+	/**
+	 * Prints a latency and throughput row for each algorithm on the concurrent fixed and dynamic memories
+	 * @param partitionConfig fixed partition config
+	 * @param clients number of client threads
+	 */
+	public static void report(String partitionConfig, int clients) throws InterruptedException {
+		System.out.println("+Load Driver, " + clients + " clients, " + MemoryTester.SEQUENCE_LENGTH + " jobs each");
+		String leftAlignFormat = "| %-7s | %-9s | %-10s | %-9s | %-9s | %-9s | %-9s | %-10s |%n";
+		String line = "+---------+-----------+------------+-----------+-----------+-----------+-----------+------------+%n";
+		System.out.format(line);
+		System.out.format(leftAlignFormat, "Memory", "Algorithm", "Operations", "Ops/ms", "p50 ns", "p99 ns", "p99.9 ns", "Max ns");
+		System.out.format(line);
+		for(Algorithm algo : Algorithm.values()){
+			//Buddy and TLSF memory have no concurrent mode
+			if(!algo.isFit()){
+				continue;
+			}
+			ConcurrentFixedMemory fix = new ConcurrentFixedMemory(MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS, partitionConfig);
+			new LoadDriver(fix, algo, clients).run().printRow(leftAlignFormat, "FIXED");
+			ConcurrentDynamicMemory dyn = new ConcurrentDynamicMemory(MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS,
+					Runtime.getRuntime().availableProcessors(), MemoryTester.MAX_JOB_SIZE);
+			new LoadDriver(dyn, algo, clients).run().printRow(leftAlignFormat, "DYNAMIC");
+		}
+		System.out.format(line);
+	}
+
+	/**
+	 * @param mem a thread safe memory
+	 * @param algo
+	 * @param clients
+	 */
+	public LoadDriver(MemoryModule mem, Algorithm algo, int clients) {
+		this.mem = mem;
+		this.algo = algo;
+		this.clients = clients;
+		mem.setVerbose(false);
+		latencies = new Histogram();
+	}
+
+	/**
+	 * Starts the clients and waits for all of them to finish their sequences
+	 * @return this driver, with its results
+	 */
+	public LoadDriver run() throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[clients];
+		Histogram[] recorded = new Histogram[clients];
+		for (int i = 0; i < clients; i++) {
+			//Every client gets its own sequence, still repeatable from the configured seed
+			Workload workload = MemoryTester.workload(MemoryTester.SEED + i);
+			Histogram histogram = new Histogram();
+			recorded[i] = histogram;
+			threads[i] = new Thread(() -> client(workload, histogram, start), "load-client-" + i);
+			threads[i].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for(Thread t : threads){
+			t.join();
+		}
+		elapsed = System.nanoTime() - begin;
+		for(Histogram histogram : recorded){
+			latencies.add(histogram);
+		}
+		return this;
+	}
+
+	/**
+	 * One client's loop, the same adds and random removals as a headless simulation
+	 * @param workload
+	 * @param histogram
+	 * @param start released when every client is ready
+	 */
+	private void client(Workload workload, Histogram histogram, CountDownLatch start) {
+		try {
+			start.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		while(workload.hasNext()){
+			Job job = workload.next();
+			long t = System.nanoTime();
+			mem.addJob(algo, job);
+			histogram.record(System.nanoTime() - t);
+			if(workload.nextRemove()){
+				t = System.nanoTime();
+				mem.removeJob();
+				histogram.record(System.nanoTime() - t);
+			}
+		}
+		//The thread ends here, so its instrumentation buffer joins the totals
+		Instrumentation.flush();
+	}
+
+	/**
+	 * @return adds and removes timed
+	 */
+	public long getOperations() {
+		return latencies.getCount();
+	}
+
+	/**
+	 * @return operations per millisecond of wall time over all clients
+	 */
+	public double getThroughput() {
+		return elapsed == 0 ? 0 : latencies.getCount() * 1e6 / elapsed;
+	}
+
+	/**
+	 * @param percent
+	 * @return latency in nanoseconds of an add or remove at the given percentile
+	 */
+	public long getLatencyPercentile(double percent) {
+		return latencies.percentile(percent);
+	}
+
+	public long getMaxLatency() {
+		return latencies.getMax();
+	}
+
+	/**
+	 * Prints one line of the summary table
+	 * @param format
+	 * @param kind
+	 */
+	private void printRow(String format, String kind) {
+		System.out.format(format, kind, algo.name().replace("_FIT", ""), getOperations(), String.format("%.1f", getThroughput()),
+				getLatencyPercentile(50), getLatencyPercentile(99), getLatencyPercentile(99.9), getMaxLatency());
+	}
+}
@@ -0,0 +1,45 @@
+package memAllocator;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Fragmentation metrics of a memory module, kept up to date on every allocate and free
+ * so reading one never scans the partitions. Published over JMX by MetricsPublisher.
+ */
+public interface MemoryMetricsMBean {
+
+	public long getTotalSize();
+
+	/**
+	 * @return memory currently held by jobs
+	 */
+	public long getUsedSize();
+
+	/**
+	 * @return memory in free partitions or blocks
+	 */
+	public long getFreeSize();
+
+	public long getLargestFreeBlock();
+
+	public int getFreeBlockCount();
+
+	/**
+	 * @return free memory outside the largest free block
+	 */
+	public long getExternalFragmentation();
+
+	/**
+	 * @return unused space inside busy partitions
+	 */
+	public long getInternalFragmentation();
+
+	/**
+	 * @return used size over total size
+	 */
+	public double getUtilization();
+
+	public int getAllocations();
+
+	public int getWaits();
+}
@@ -0,0 +1,76 @@
+package memAllocator;
+
+import java.util.Random;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Common operations of the memory modules so the simulation can drive any of them
+ */
+public interface MemoryModule {
+
+	/**
+	 * Places the job using the given algorithm, or queues it if there is no room
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob);
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob();
+
+	/**
+	 * Simulates the given job completing
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id);
+
+	public void printAll();
+
+	/**
+	 * @return a copy of the blocks and wait queue, cheap enough to take on the allocating thread
+	 */
+	public MemorySnapshot snapshot();
+
+	public boolean isEmpty();
+
+	/**
+	 * Turns the per operation trace output on or off
+	 * @param verbose
+	 */
+	public void setVerbose(boolean verbose);
+
+	/**
+	 * Sets the source of random removals, so a seeded run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random);
+
+	public long getTotalSize();
+
+	/**
+	 * @return memory currently held by jobs
+	 */
+	public long getUsedSize();
+
+	/**
+	 * @return memory currently lost to fragmentation
+	 */
+	public long getFragmentation();
+
+	/**
+	 * @return number of jobs placed so far, including jobs placed from the wait queue
+	 */
+	public int getAllocations();
+
+	/**
+	 * @return number of jobs that had to go to the wait queue so far
+	 */
+	public int getWaits();
+}
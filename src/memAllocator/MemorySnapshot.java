@@ -0,0 +1,219 @@
+package memAllocator;
+
+import java.util.Arrays;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Immutable copy of a memory's blocks and wait queue at one moment.
+ * Capturing it only copies numbers into arrays, so the allocator can hand it to
+ * another thread and keep going while the text report is built from it.
+ */
+public final class MemorySnapshot {
+
+	//Job id of a free block
+	static final int FREE = -1;
+
+	private final String title;
+	private final long totalSize;
+	private final long[] addresses;
+	private final long[] sizes;
+	private final int[] jobIds;
+	private final long[] jobSizes;
+	private final int[] waitingIds;
+	private final long[] waitingSizes;
+	private final long step;
+
+	private MemorySnapshot(Builder builder) {
+		title = builder.title;
+		totalSize = builder.totalSize;
+		addresses = Arrays.copyOf(builder.addresses, builder.blocks);
+		sizes = Arrays.copyOf(builder.sizes, builder.blocks);
+		jobIds = Arrays.copyOf(builder.jobIds, builder.blocks);
+		jobSizes = Arrays.copyOf(builder.jobSizes, builder.blocks);
+		waitingIds = Arrays.copyOf(builder.waitingIds, builder.waiting);
+		waitingSizes = Arrays.copyOf(builder.waitingSizes, builder.waiting);
+		step = 0;
+	}
+
+	/**
+	 * Same blocks and waiting jobs, the arrays are never written so they are shared
+	 * @param from
+	 * @param step
+	 */
+	private MemorySnapshot(MemorySnapshot from, long step) {
+		title = from.title;
+		totalSize = from.totalSize;
+		addresses = from.addresses;
+		sizes = from.sizes;
+		jobIds = from.jobIds;
+		jobSizes = from.jobSizes;
+		waitingIds = from.waitingIds;
+		waitingSizes = from.waitingSizes;
+		this.step = step;
+	}
+
+	/**
+	 * Collects the blocks in address order, then the waiting jobs
+	 */
+	static class Builder {
+		private String title;
+		private long totalSize;
+		private long[] addresses = new long[16];
+		private long[] sizes = new long[16];
+		private int[] jobIds = new int[16];
+		private long[] jobSizes = new long[16];
+		private int blocks;
+		private int[] waitingIds = new int[16];
+		private long[] waitingSizes = new long[16];
+		private int waiting;
+
+		/**
+		 * @param title kind of memory, as in "Dynamic Partition"
+		 * @param totalSize
+		 */
+		Builder(String title, long totalSize) {
+			this.title = title;
+			this.totalSize = totalSize;
+		}
+
+		/**
+		 * @param address
+		 * @param size
+		 * @param job the job in the block, null if it is free
+		 * @return this builder
+		 */
+		Builder block(long address, long size, Job job) {
+			return block(address, size, job == null ? FREE : job.getId(), job == null ? 0 : job.getSize());
+		}
+
+		/**
+		 * @param address
+		 * @param size
+		 * @param jobId FREE if the block is free
+		 * @param jobSize
+		 * @return this builder
+		 */
+		Builder block(long address, long size, int jobId, long jobSize) {
+			if(blocks == addresses.length){
+				addresses = Arrays.copyOf(addresses, blocks * 2);
+				sizes = Arrays.copyOf(sizes, blocks * 2);
+				jobIds = Arrays.copyOf(jobIds, blocks * 2);
+				jobSizes = Arrays.copyOf(jobSizes, blocks * 2);
+			}
+			addresses[blocks] = address;
+			sizes[blocks] = size;
+			jobIds[blocks] = jobId;
+			jobSizes[blocks] = jobSize;
+			blocks++;
+			return this;
+		}
+
+		/**
+		 * @param waitJobs
+		 * @return this builder
+		 */
+		Builder waiting(Iterable<Job> waitJobs) {
+			for(Job j : waitJobs){
+				if(waiting == waitingIds.length){
+					waitingIds = Arrays.copyOf(waitingIds, waiting * 2);
+					waitingSizes = Arrays.copyOf(waitingSizes, waiting * 2);
+				}
+				waitingIds[waiting] = j.getId();
+				waitingSizes[waiting] = j.getSize();
+				waiting++;
+			}
+			return this;
+		}
+
+		/**
+		 * Adds the blocks and waiting jobs of another snapshot, for memories made of several parts
+		 * @param part
+		 * @return this builder
+		 */
+		Builder add(MemorySnapshot part) {
+			for (int i = 0; i < part.addresses.length; i++) {
+				block(part.addresses[i], part.sizes[i], part.jobIds[i], part.jobSizes[i]);
+			}
+			for (int i = 0; i < part.waitingIds.length; i++) {
+				if(waiting == waitingIds.length){
+					waitingIds = Arrays.copyOf(waitingIds, waiting * 2);
+					waitingSizes = Arrays.copyOf(waitingSizes, waiting * 2);
+				}
+				waitingIds[waiting] = part.waitingIds[i];
+				waitingSizes[waiting] = part.waitingSizes[i];
+				waiting++;
+			}
+			return this;
+		}
+
+		MemorySnapshot build() {
+			return new MemorySnapshot(this);
+		}
+	}
+
+	/**
+	 * @param step simulation step the snapshot was taken at
+	 * @return this snapshot labelled with the step
+	 */
+	MemorySnapshot atStep(long step) {
+		return new MemorySnapshot(this, step);
+	}
+
+	/**
+	 * Appends the same memory stack and wait queue report the printSnapShot methods print
+	 * @param out
+	 */
+	void render(StringBuilder out) {
+		String line = "+----------------------+\n";
+		out.append("\n+Snapshot ").append(title).append(", step ").append(step).append('\n');
+		out.append(line).append("| Memory Stack         |\n").append(line);
+		for (int i = 0; i < addresses.length; i++) {
+			long shown;
+			if(jobIds[i] == FREE){
+				row(out, "", addresses[i] + "k");
+				shown = sizes[i];
+			}
+			else {
+				row(out, "Job " + jobIds[i] + " = " + jobSizes[i] + "k", addresses[i] + "k");
+				shown = jobSizes[i];
+			}
+			for (long b = 0; b < shown / 10 - 1; b++) {
+				row(out, "", "");
+			}
+			if(jobIds[i] != FREE && sizes[i] > jobSizes[i]){
+				out.append("+......................+\n");
+				row(out, " has " + (sizes[i] - jobSizes[i]) + "k frag", "");
+			}
+			out.append(line);
+		}
+		out.append(String.format(" %28s %n", totalSize + "k"));
+		if(waitingIds.length == 0){
+			out.append("\nNo jobs currently waiting.\n");
+			return;
+		}
+		out.append("\n+Job Waiting Queue\n").append(line).append("| Job                  |\n").append(line);
+		for (int i = 0; i < waitingIds.length; i++) {
+			row(out, "Job " + waitingIds[i] + " - " + waitingSizes[i] + "k", null);
+		}
+		out.append(line);
+	}
+
+	/**
+	 * One line of the stack, the text padded to the width of the box like "| %-20s |"
+	 * @param out
+	 * @param text
+	 * @param address shown after the box, null closes the box instead
+	 */
+	private static void row(StringBuilder out, String text, String address) {
+		out.append("| ").append(text);
+		for (int i = text.length(); i < 20; i++) {
+			out.append(' ');
+		}
+		out.append(" |");
+		if(address != null){
+			out.append(' ').append(address);
+		}
+		out.append('\n');
+	}
+}
@@ -1,13 +1,19 @@
 package memAllocator;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.util.ArrayDeque;
+import java.io.UncheckedIOException;
 import java.util.concurrent.ThreadLocalRandom;
 
+import javax.management.JMException;
+
+import memAllocator.Workload.SizeDistribution;
+
 public class MemoryTester {
 
 	static final long MEMORY_SIZE = 200;
@@ -18,27 +24,243 @@ public class MemoryTester {
 	//Minimum size of a randomly generated job
 	static int MIN_JOB_SIZE;
 	//How long the sequence of add or remove jobs will be
-	static int SEQUENCE_LENGTH;
+	static long SEQUENCE_LENGTH;
 	//Probability of removing a job every cycle
 	static double REMOVE_CHANCE;
+	//How the job sizes are spread between the minimum and maximum
+	static SizeDistribution SIZE_DISTRIBUTION = SizeDistribution.UNIFORM;
+	//Seed of the job sequence, both memories run the same sequence
+	static long SEED;
+	//Skip rendering and only keep aggregated counters
+	static boolean HEADLESS;
+	//In headless mode render the memory every this many steps, 0 never renders by count
+	static int SNAPSHOT_INTERVAL;
+	//In headless mode also render the memory whenever a job has to wait
+	static boolean SNAPSHOT_ON_WAIT;
+	//Back dynamic memory with the primitive partition table instead of Partition objects
+	static boolean TABLE;
+	//Put small jobs in slabs carved from dynamic memory
+	static boolean SLAB;
+	//Split dynamic memory into per thread arenas and claim fixed partitions without locks
+	static boolean CONCURRENT;
+	//Record each simulation into <name>-fixed.trace and <name>-dynamic.trace, null does not record
+	static String RECORD_NAME;
+	//Publish the fixed and dynamic memory metrics over JMX
+	static boolean JMX;
+	//Most bytes dynamic memory compaction may move per remove, 0 never compacts
+	static long COMPACTION_BUDGET;
+	//Save fixed and dynamic memory to <name>-fixed.ckpt and <name>-dynamic.ckpt when the job sequence ends, null does not save
+	static String CHECKPOINT_NAME;
+	//Start fixed and dynamic memory from the checkpoints saved under this name instead of empty, null starts empty
+	static String RESTORE_NAME;
+	//Drive the concurrent memories from this many client threads at once instead of simulating, 0 simulates
+	static int LOAD_CLIENTS;
 
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws IOException, JMException, InterruptedException {
 
 		PrintStream out = new PrintStream(new FileOutputStream("output.txt"));
 		System.setOut(out);
 
 		Algorithm algo = algoParser(args[2]);
-		//Create random job request sequence
-		ArrayDeque<JobRequest> dynJobRequests = jobBuilder(args[0]);
-		//Copy queue for use in fixed memory
-		ArrayDeque<JobRequest> fixJobRequests = new ArrayDeque<JobRequest>(dynJobRequests);
-		FixedMemory fix = new FixedMemory(MEMORY_SIZE, MEMORY_ADDRESS, args[1]);
-		DynamicMemory dyn = new DynamicMemory(MEMORY_SIZE, MEMORY_ADDRESS);
+		optionParser(args);
+		checkMemoryOptions(algo);
+		if(RESTORE_NAME != null){
+			checkRestorable(algo);
+		}
+		//Read the job sequence parameters, the jobs themselves are generated as each simulation runs
+		jobBuilder(args[0]);
+		if(LOAD_CLIENTS > 0){
+			LoadDriver.report(args[1], LOAD_CLIENTS);
+			return;
+		}
+		//Buddy and TLSF blocks are split from one dynamic memory, fixed partitions cannot take part
+		if(!algo.isFit()){
+			System.out.println(algo.name() + " MEMORY SIMULATION");
+			simulateAllocation(dynamicMemory(algo, MEMORY_SIZE, MEMORY_ADDRESS), workload(), algo, algo.name().toLowerCase());
+			return;
+		}
+		MemoryModule fix;
+		MemoryModule dyn = dynamicMemory(algo, MEMORY_SIZE, MEMORY_ADDRESS);
+		if(RESTORE_NAME != null){
+			fix = FixedMemory.restore(RESTORE_NAME + "-fixed.ckpt");
+			dyn = DynamicMemory.restore(RESTORE_NAME + "-dynamic.ckpt");
+		}
+		else if(CONCURRENT){
+			fix = new ConcurrentFixedMemory(MEMORY_SIZE, MEMORY_ADDRESS, args[1]);
+		}
+		else {
+			fix = new FixedMemory(MEMORY_SIZE, MEMORY_ADDRESS, args[1]);
+		}
+		if(dyn instanceof DynamicMemory){
+			((DynamicMemory) dyn).setCompactionBudget(COMPACTION_BUDGET);
+		}
+
+		if(JMX){
+			if(Instrumentation.ENABLED){
+				MetricsPublisher.registerInstrumentation();
+			}
+			if(fix instanceof MemoryMetricsMBean){
+				MetricsPublisher.register("fixed", (MemoryMetricsMBean) fix);
+			}
+			if(dyn instanceof MemoryMetricsMBean){
+				MetricsPublisher.register("dynamic", (MemoryMetricsMBean) dyn);
+			}
+		}
 
 		//Run the simulations with the given algorithm
-		simulateAllocation(fix, fixJobRequests, algo);
-		simulateAllocation(dyn, dynJobRequests, algo);
+		System.out.println("FIXED MEMORY SIMULATION");
+		simulateAllocation(fix, workload(), algo, "fixed");
+		System.out.println();
+		System.out.println("DYNAMIC MEMORY SIMULATION");
+		simulateAllocation(dyn, workload(), algo, "dynamic");
+		if(COMPACTION_BUDGET > 0 && dyn instanceof DynamicMemory){
+			((DynamicMemory) dyn).printCompaction();
+		}
+
+	}
+
+	/**
+	 * Reads the optional arguments after the algorithm:
+	 * HEADLESS, a snapshot interval and ONWAIT for headless runs, TABLE, SLAB, CONCURRENT, RECORD name, COMPACT budget, JMX,
+	 * CHECKPOINT name, RESTORE name and LOAD clients
+	 * @param args
+	 */
+	private static void optionParser(String[] args) {
+		for (int i = 3; i < args.length; i++) {
+			if(args[i].equalsIgnoreCase("HEADLESS")){
+				HEADLESS = true;
+			}
+			else if(args[i].equalsIgnoreCase("ONWAIT")){
+				SNAPSHOT_ON_WAIT = true;
+			}
+			else if(args[i].equalsIgnoreCase("TABLE")){
+				TABLE = true;
+			}
+			else if(args[i].equalsIgnoreCase("SLAB")){
+				SLAB = true;
+			}
+			else if(args[i].equalsIgnoreCase("CONCURRENT")){
+				CONCURRENT = true;
+			}
+			else if(args[i].equalsIgnoreCase("RECORD")){
+				RECORD_NAME = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("JMX")){
+				JMX = true;
+			}
+			else if(args[i].equalsIgnoreCase("COMPACT")){
+				COMPACTION_BUDGET = Long.parseLong(args[++i]);
+			}
+			else if(args[i].equalsIgnoreCase("CHECKPOINT")){
+				CHECKPOINT_NAME = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("RESTORE")){
+				RESTORE_NAME = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("LOAD")){
+				LOAD_CLIENTS = Integer.parseInt(args[++i]);
+			}
+			else {
+				SNAPSHOT_INTERVAL = Integer.parseInt(args[i]);
+			}
+		}
+	}
 
+	/**
+	 * TABLE, SLAB and CONCURRENT each pick a different dynamic memory for the fit algorithms,
+	 * so rather than one of them quietly winning, any combination of them is refused,
+	 * as is using one with buddy or TLSF memory or TABLE or SLAB with the LOAD driver, which ignore it
+	 * @param algo
+	 */
+	private static void checkMemoryOptions(Algorithm algo) {
+		String chosen = null;
+		String[] names = {"TABLE", "SLAB", "CONCURRENT"};
+		boolean[] set = {TABLE, SLAB, CONCURRENT};
+		for (int i = 0; i < names.length; i++) {
+			if(!set[i]){
+				continue;
+			}
+			if(chosen != null){
+				throw new IllegalArgumentException(chosen + " cannot be combined with " + names[i]
+						+ ", choose one dynamic memory");
+			}
+			chosen = names[i];
+		}
+		if(chosen == null){
+			return;
+		}
+		if(!algo.isFit()){
+			throw new IllegalArgumentException(chosen + " cannot be combined with " + algo.name()
+					+ ", it only applies to the fit algorithms");
+		}
+		if(LOAD_CLIENTS > 0 && !CONCURRENT){
+			throw new IllegalArgumentException(chosen + " cannot be combined with LOAD, which always runs the concurrent memories");
+		}
+	}
+
+	/**
+	 * Only fixed and plain dynamic memory have checkpoints, so rather than starting
+	 * any other memory fresh the run is refused
+	 * @param algo
+	 */
+	private static void checkRestorable(Algorithm algo) {
+		String unsupported = null;
+		if(!algo.isFit()){
+			unsupported = algo.name();
+		}
+		else if(TABLE){
+			unsupported = "TABLE";
+		}
+		else if(SLAB){
+			unsupported = "SLAB";
+		}
+		else if(CONCURRENT){
+			unsupported = "CONCURRENT";
+		}
+		else if(LOAD_CLIENTS > 0){
+			unsupported = "LOAD";
+		}
+		if(unsupported != null){
+			throw new IllegalArgumentException("RESTORE cannot be combined with " + unsupported
+					+ ", only fixed and plain dynamic memory can be restored");
+		}
+	}
+
+	/**
+	 * Creates the dynamic memory module that runs the given algorithm
+	 * @param algo
+	 * @param size
+	 * @param memAddress
+	 * @return the memory module
+	 */
+	static MemoryModule dynamicMemory(Algorithm algo, long size, long memAddress) {
+		return dynamicMemory(algo, size, memAddress, TABLE);
+	}
+
+	/**
+	 * @param algo
+	 * @param size
+	 * @param memAddress
+	 * @param table use the primitive partition table store for the fit algorithms
+	 * @return the memory module
+	 */
+	static MemoryModule dynamicMemory(Algorithm algo, long size, long memAddress, boolean table) {
+		if(algo == Algorithm.BUDDY){
+			return new BuddyMemory(size, memAddress);
+		}
+		if(algo == Algorithm.TLSF){
+			return new TlsfMemory(size, memAddress);
+		}
+		if(table){
+			return new DynamicTableMemory(size, memAddress);
+		}
+		if(SLAB){
+			return new SlabMemory(size, memAddress);
+		}
+		if(CONCURRENT){
+			return new ConcurrentDynamicMemory(size, memAddress, Runtime.getRuntime().availableProcessors(), MAX_JOB_SIZE);
+		}
+		return new DynamicMemory(size, memAddress);
 	}
 
 	private static Algorithm algoParser(String string) {
@@ -46,79 +268,170 @@ public class MemoryTester {
 		return algo;
 	}
 
-	private static void simulateAllocation(DynamicMemory dyn, ArrayDeque<JobRequest> jobRequests, Algorithm algo) {
-		System.out.println();
-		System.out.println("DYNAMIC MEMORY SIMULATION");
+	/**
+	 * Runs the simulation, recording it to <RECORD_NAME>-<kind>.trace if recording is on
+	 * @param mem
+	 * @param workload
+	 * @param algo
+	 * @param kind name of the memory in the trace file name
+	 */
+	private static void simulateAllocation(MemoryModule mem, Workload workload, Algorithm algo, String kind) throws IOException {
+		if(RECORD_NAME == null){
+			simulateAllocation(mem, workload, algo);
+			return;
+		}
+		TraceRecorder recorder = new TraceRecorder(mem, RECORD_NAME + "-" + kind + ".trace");
+		try {
+			simulateAllocation(recorder, workload, algo);
+		} finally {
+			recorder.close();
+		}
+	}
+
+	private static void simulateAllocation(MemoryModule mem, Workload workload, Algorithm algo) throws IOException {
+		if(HEADLESS){
+			//Sampled snapshots are rendered on another thread while the simulation runs
+			SnapshotRenderer renderer = null;
+			if(SNAPSHOT_INTERVAL > 0 || SNAPSHOT_ON_WAIT){
+				renderer = new SnapshotRenderer(new BufferedWriter(new OutputStreamWriter(System.out)), SNAPSHOT_INTERVAL, SNAPSHOT_ON_WAIT);
+			}
+			SimulationStats stats = simulateHeadless(mem, workload, algo, renderer);
+			if(renderer != null){
+				renderer.close();
+			}
+			stats.printStats();
+			return;
+		}
+		mem.setRandom(workload.getRandom());
 		//continue while there is a any jobs left in request sequence
-		while(!jobRequests.isEmpty()) {
-			dyn.addJob(algo, jobRequests.poll().job);
-			//Randomly remove a job with % chance
-			if(ThreadLocalRandom.current().nextDouble() > (1-REMOVE_CHANCE)){
-				dyn.removeJob();
-				dyn.printAll();
+		while(workload.hasNext()) {
+			mem.addJob(algo, workload.next());
+			//Randomly remove a job with % chance, the chance is still drawn when memory is empty so the sequence stays the same
+			if(workload.nextRemove() && !mem.isEmpty()){
+				mem.removeJob();
+				mem.printAll();
 			}
-			dyn.printAll();
+			mem.printAll();
 		}
+		checkpoint(mem);
 		//Remove jobs until memory is empty
-		while(!dyn.isEmpty()){
-			dyn.removeJob();
-			dyn.printAll();
+		while(!mem.isEmpty()){
+			mem.removeJob();
+			mem.printAll();
 		}
 	}
 
-	private static void simulateAllocation(FixedMemory fix, ArrayDeque<JobRequest> jobRequests, Algorithm algo) {
-		System.out.println("FIXED MEMORY SIMULATION");
-		//continue while there is a any jobs left in request sequence
-		while(!jobRequests.isEmpty()) {
-			fix.addJob(algo, jobRequests.poll().job);
-			//Randomly remove a job with % chance
-			if(ThreadLocalRandom.current().nextDouble() > (1-REMOVE_CHANCE)){
-				fix.removeJob();
-				fix.printAll();
+	/**
+	 * Runs the same sequence as simulateAllocation without printing every step.
+	 * Every random choice, down to which job is removed, comes from the workload's seed.
+	 * @param mem
+	 * @param workload
+	 * @param algo
+	 * @param renderer takes the sampled snapshots, null takes none
+	 * @return the aggregated counters of the run
+	 */
+	static SimulationStats simulateHeadless(MemoryModule mem, Workload workload, Algorithm algo, SnapshotRenderer renderer) {
+		SimulationStats stats = new SimulationStats();
+		mem.setVerbose(false);
+		mem.setRandom(workload.getRandom());
+		while(workload.hasNext()) {
+			mem.addJob(algo, workload.next());
+			step(mem, stats, renderer);
+			if(workload.nextRemove() && !mem.isEmpty()){
+				mem.removeJob();
+				step(mem, stats, renderer);
 			}
-			fix.printAll();
 		}
-		//Remove jobs until memory is empty
-		while(!fix.isEmpty()){
-			fix.removeJob();
-			fix.printAll();
+		checkpoint(mem);
+		while(!mem.isEmpty()){
+			mem.removeJob();
+			step(mem, stats, renderer);
+		}
+		return stats;
+	}
+
+	/**
+	 * Saves fixed or plain dynamic memory under CHECKPOINT_NAME, other memories are not saved
+	 * @param mem
+	 */
+	private static void checkpoint(MemoryModule mem) {
+		if(CHECKPOINT_NAME == null){
+			return;
+		}
+		if(mem instanceof TraceRecorder){
+			mem = ((TraceRecorder) mem).getMemory();
+		}
+		try {
+			if(mem instanceof FixedMemory){
+				((FixedMemory) mem).checkpoint(CHECKPOINT_NAME + "-fixed.ckpt");
+			}
+			else if(mem instanceof DynamicMemory){
+				((DynamicMemory) mem).checkpoint(CHECKPOINT_NAME + "-dynamic.ckpt");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
-	private static ArrayDeque<JobRequest> jobBuilder(String fileName) throws IOException{
+	private static void step(MemoryModule mem, SimulationStats stats, SnapshotRenderer renderer) {
+		stats.record(mem);
+		if(renderer != null){
+			renderer.step(mem);
+		}
+	}
+
+	/**
+	 * Reads the job config: sequence length, minimum and maximum job size, remove chance in percent,
+	 * then optionally the size distribution (UNIFORM by default) and a seed (a random one by default)
+	 * @param fileName
+	 */
+	static void jobBuilder(String fileName) throws IOException{
 		BufferedReader in = new BufferedReader(new FileReader(fileName));
 		String input = in.readLine();
-		String[] tokens = input.split(" ");
+		String[] tokens = input.trim().split("\\s+");
 		in.close();
 
-		SEQUENCE_LENGTH = Integer.parseInt(tokens[0]);
+		SEQUENCE_LENGTH = Long.parseLong(tokens[0]);
 		MIN_JOB_SIZE = Integer.parseInt(tokens[1]);
 		MAX_JOB_SIZE = Integer.parseInt(tokens[2]);
-		REMOVE_CHANCE = (Integer.parseInt(tokens[3]) / 100);
-
-		ArrayDeque<JobRequest> jobArray = new ArrayDeque<JobRequest>();
-		for (int i = 0; i < SEQUENCE_LENGTH; i++) {
-			jobArray.add(new JobRequest());
+		REMOVE_CHANCE = Integer.parseInt(tokens[3]) / 100.0;
+		if(tokens.length > 4){
+			SIZE_DISTRIBUTION = SizeDistribution.valueOf(tokens[4].toUpperCase());
 		}
-		return jobArray;
+		SEED = tokens.length > 5 ? Long.parseLong(tokens[5]) : ThreadLocalRandom.current().nextLong();
 	}
 
-	private static class JobRequest 
-	{
-		Job job;
-		private JobRequest(){
-			int jobSize = ThreadLocalRandom.current().nextInt(MIN_JOB_SIZE, MAX_JOB_SIZE);
-			job = new Job(jobSize);
-		}
+	/**
+	 * @return a new generator of the configured job sequence, every call starts the same sequence over
+	 */
+	static Workload workload(){
+		return workload(SEED);
 	}
+
+	/**
+	 * @param seed
+	 * @return a new generator of the configured job sequence drawn from the given seed
+	 */
+	static Workload workload(long seed){
+		return new Workload(SEQUENCE_LENGTH, MIN_JOB_SIZE, MAX_JOB_SIZE, SIZE_DISTRIBUTION, REMOVE_CHANCE, seed);
+	}
+
 	public enum Algorithm {
-		BEST_FIT("BEST"), FIRST_FIT("FIRST"), WORST_FIT("WORST"), NEXT_FIT("NEXT");
+		BEST_FIT("BEST"), FIRST_FIT("FIRST"), WORST_FIT("WORST"), NEXT_FIT("NEXT"), BUDDY("BUDDY"), TLSF("TLSF");
 
 		private String text;
 
 		Algorithm(String text) {
 			this.text = text.toUpperCase();
 		}
+
+		/**
+		 * @return if this is one of the fit algorithms, buddy and TLSF have memories of their own
+		 * and fixed partitions cannot run them
+		 */
+		boolean isFit() {
+			return this != BUDDY && this != TLSF;
+		}
 	}
 }
 
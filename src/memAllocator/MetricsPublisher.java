@@ -0,0 +1,53 @@
+package memAllocator;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Registers memory modules with the platform MBean server so a long run can be watched live,
+ * for example with jconsole. The metrics are written by the simulation thread without locking,
+ * so a reading may be one operation behind.
+ */
+public class MetricsPublisher {
+
+	private static final String DOMAIN = "memAllocator";
+
+	/**
+	 * @param name shown as the MBean name, for example "fixed" or "dynamic"
+	 * @param metrics
+	 * @return the name the module was registered under
+	 */
+	public static ObjectName register(String name, MemoryMetricsMBean metrics) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(DOMAIN, "name", name);
+		if(server.isRegistered(objectName)){
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(new StandardMBean(metrics, MemoryMetricsMBean.class), objectName);
+		return objectName;
+	}
+
+	/**
+	 * Publishes the on demand instrumentation dump
+	 * @return the name it was registered under
+	 */
+	public static ObjectName registerInstrumentation() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName(DOMAIN, "name", "instrumentation");
+		if(server.isRegistered(objectName)){
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(new StandardMBean(new Instrumentation.Dumper(), InstrumentationMBean.class), objectName);
+		return objectName;
+	}
+
+	public static void unregister(ObjectName objectName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+}
@@ -0,0 +1,249 @@
+package memAllocator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Ordered index over the rows of a primitive table, without boxing.
+ * Each row is in the index at most once, keyed by (primary, secondary).
+ * It is a treap whose nodes are the row numbers themselves, so the links live in int arrays.
+ */
+class RowIndex {
+
+	private static final int NONE = -1;
+
+	private long[] primary;
+	private long[] secondary;
+	private int[] left;
+	private int[] right;
+	private int[] priority;
+	private int root;
+	private int size;
+	private Random random;
+
+	RowIndex(int capacity) {
+		primary = new long[capacity];
+		secondary = new long[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		priority = new int[capacity];
+		root = NONE;
+		random = new Random(capacity);
+	}
+
+	/**
+	 * Grows the index so it can hold rows below the given capacity
+	 * @param capacity
+	 */
+	void ensureCapacity(int capacity) {
+		if(capacity > left.length){
+			primary = Arrays.copyOf(primary, capacity);
+			secondary = Arrays.copyOf(secondary, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			priority = Arrays.copyOf(priority, capacity);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	private int compare(long p, long s, int row) {
+		if(p != primary[row]){
+			return p < primary[row] ? -1 : 1;
+		}
+		if(s != secondary[row]){
+			return s < secondary[row] ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds the row under the given key, the row must not be in the index yet
+	 * @param row
+	 * @param p
+	 * @param s
+	 */
+	void insert(int row, long p, long s) {
+		primary[row] = p;
+		secondary[row] = s;
+		left[row] = NONE;
+		right[row] = NONE;
+		priority[row] = random.nextInt();
+		root = insert(root, row);
+		size++;
+	}
+
+	private int insert(int node, int row) {
+		if(node == NONE){
+			return row;
+		}
+		if(compare(primary[row], secondary[row], node) < 0){
+			left[node] = insert(left[node], row);
+			if(priority[left[node]] > priority[node]){
+				return rotateRight(node);
+			}
+		}
+		else {
+			right[node] = insert(right[node], row);
+			if(priority[right[node]] > priority[node]){
+				return rotateLeft(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the row, using the key it was inserted with
+	 * @param row
+	 */
+	void remove(int row) {
+		root = remove(root, primary[row], secondary[row]);
+		size--;
+	}
+
+	private int remove(int node, long p, long s) {
+		int cmp = compare(p, s, node);
+		if(cmp < 0){
+			left[node] = remove(left[node], p, s);
+			return node;
+		}
+		if(cmp > 0){
+			right[node] = remove(right[node], p, s);
+			return node;
+		}
+		//Found, rotate it down until it has at most one child
+		if(left[node] == NONE){
+			return right[node];
+		}
+		if(right[node] == NONE){
+			return left[node];
+		}
+		if(priority[left[node]] > priority[right[node]]){
+			int top = rotateRight(node);
+			right[top] = remove(node, p, s);
+			return top;
+		}
+		int top = rotateLeft(node);
+		left[top] = remove(node, p, s);
+		return top;
+	}
+
+	private int rotateRight(int node) {
+		int top = left[node];
+		left[node] = right[top];
+		right[top] = node;
+		return top;
+	}
+
+	private int rotateLeft(int node) {
+		int top = right[node];
+		right[node] = left[top];
+		left[top] = node;
+		return top;
+	}
+
+	/**
+	 * @param p
+	 * @param s
+	 * @return the row with the smallest key at or above (p, s), or -1
+	 */
+	int ceiling(long p, long s) {
+		int best = NONE;
+		int node = root;
+		while(node != NONE){
+			if(compare(p, s, node) <= 0){
+				best = node;
+				node = left[node];
+			}
+			else {
+				node = right[node];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param p
+	 * @param s
+	 * @return the row with the largest key at or below (p, s), or -1
+	 */
+	int floor(long p, long s) {
+		int best = NONE;
+		int node = root;
+		while(node != NONE){
+			if(compare(p, s, node) >= 0){
+				best = node;
+				node = right[node];
+			}
+			else {
+				node = left[node];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param row a row in the index
+	 * @return the row with the next larger key, or -1
+	 */
+	int higher(int row) {
+		long p = primary[row];
+		long s = secondary[row];
+		int best = NONE;
+		int node = root;
+		while(node != NONE){
+			if(compare(p, s, node) < 0){
+				best = node;
+				node = left[node];
+			}
+			else {
+				node = right[node];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the row with the smallest key, or -1
+	 */
+	int first() {
+		int node = root;
+		if(node == NONE){
+			return NONE;
+		}
+		while(left[node] != NONE){
+			node = left[node];
+		}
+		return node;
+	}
+
+	/**
+	 * @return the row with the largest key, or -1
+	 */
+	int last() {
+		int node = root;
+		if(node == NONE){
+			return NONE;
+		}
+		while(right[node] != NONE){
+			node = right[node];
+		}
+		return node;
+	}
+
+	/**
+	 * @param row a row in the index
+	 * @return the primary key the row was inserted with
+	 */
+	long key(int row) {
+		return primary[row];
+	}
+}
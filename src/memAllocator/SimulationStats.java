@@ -0,0 +1,69 @@
+package memAllocator;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Aggregated counters of a headless simulation run.
+ * Sampled once per step instead of rendering the memory.
+ */
+public class SimulationStats {
+	private long steps;
+	private int allocations;
+	private int waits;
+	private double fragmentationTotal;
+	private double peakUtilization;
+
+	/**
+	 * Records the state of the memory after one add or remove step
+	 * @param mem
+	 */
+	public void record(MemoryModule mem){
+		steps++;
+		allocations = mem.getAllocations();
+		waits = mem.getWaits();
+		fragmentationTotal += mem.getFragmentation();
+		double utilization = (double) mem.getUsedSize() / mem.getTotalSize();
+		if(utilization > peakUtilization){
+			peakUtilization = utilization;
+		}
+	}
+
+	public long getSteps() {
+		return steps;
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+
+	/**
+	 * @return fragmentation averaged over every step
+	 */
+	public double getAverageFragmentation() {
+		if(steps == 0){
+			return 0;
+		}
+		return fragmentationTotal / steps;
+	}
+
+	public double getPeakUtilization() {
+		return peakUtilization;
+	}
+
+	public void printStats(){
+		System.out.println();
+		String leftAlignFormat = "| %-22s | %-13s |%n";
+		System.out.println("+Simulation Summary");
+		System.out.format("+------------------------+---------------+%n");
+		System.out.format(leftAlignFormat, "Steps", steps);
+		System.out.format(leftAlignFormat, "Allocations", allocations);
+		System.out.format(leftAlignFormat, "Waits", waits);
+		System.out.format(leftAlignFormat, "Avg Fragmentation", String.format("%.2fk", getAverageFragmentation()));
+		System.out.format(leftAlignFormat, "Peak Utilization", String.format("%.2f%%", peakUtilization * 100));
+		System.out.format("+------------------------+---------------+%n");
+	}
+}
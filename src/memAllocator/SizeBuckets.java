@@ -0,0 +1,217 @@
+package memAllocator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Free fixed partitions bucketed by size. Fixed partitions never change size,
+ * so the k distinct sizes are known up front and each gets a bucket of its free partitions in address order.
+ * A min tree over the buckets holds the lowest free partition of each one,
+ * so first, best and worst fit are each one walk of the tree, O(log k), plus the bucket lookup.
+ */
+class SizeBuckets implements FreePartitions {
+
+	private static final int EMPTY = Integer.MAX_VALUE;
+
+	//Distinct partition sizes, ascending
+	private long[] sizes;
+	//Bucket of every partition
+	private int[] bucketOf;
+	private List<TreeSet<Integer>> buckets;
+	//Bucket i is leaf leaves + i, every node holds the lowest free partition below it
+	private int[] tree;
+	private int leaves;
+	private long largestFree;
+	private int count;
+	//Tree nodes and buckets read by the last search
+	private int examined;
+
+	/**
+	 * Every partition starts out claimed
+	 * @param partitions all partitions in address order
+	 * @param partitionSizes every size a partition can have, ascending
+	 */
+	SizeBuckets(List<Partition> partitions, long[] partitionSizes) {
+		sizes = partitionSizes;
+		int k = sizes.length;
+		bucketOf = new int[partitions.size()];
+		for (int i = 0; i < bucketOf.length; i++) {
+			bucketOf[i] = Arrays.binarySearch(sizes, partitions.get(i).getSize());
+		}
+		buckets = new ArrayList<TreeSet<Integer>>(k);
+		for (int i = 0; i < k; i++) {
+			buckets.add(new TreeSet<Integer>());
+		}
+		leaves = 1;
+		while(leaves < k){
+			leaves *= 2;
+		}
+		tree = new int[2 * leaves];
+		Arrays.fill(tree, EMPTY);
+	}
+
+	public void add(int index) {
+		int b = bucketOf[index];
+		buckets.get(b).add(index);
+		update(b);
+		count++;
+		if(sizes[b] > largestFree){
+			largestFree = sizes[b];
+		}
+	}
+
+	public void remove(int index) {
+		int b = bucketOf[index];
+		TreeSet<Integer> bucket = buckets.get(b);
+		bucket.remove(index);
+		update(b);
+		count--;
+		//Only the last partition of the largest size changes the largest free partition
+		if(bucket.isEmpty() && sizes[b] == largestFree){
+			int last = rightmost();
+			largestFree = last == NONE ? 0 : sizes[last];
+		}
+	}
+
+	public long largest() {
+		return largestFree;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public int examined() {
+		return examined;
+	}
+
+	public int firstFit(long size) {
+		//Minimum over the leaves from the first bucket that fits to the end
+		examined = 0;
+		int lowest = EMPTY;
+		int lo = leaves + lowerBound(size);
+		int hi = 2 * leaves;
+		while(lo < hi){
+			if((lo & 1) == 1){
+				lowest = Math.min(lowest, tree[lo++]);
+				examined++;
+			}
+			if((hi & 1) == 1){
+				lowest = Math.min(lowest, tree[--hi]);
+				examined++;
+			}
+			lo /= 2;
+			hi /= 2;
+		}
+		return lowest == EMPTY ? NONE : lowest;
+	}
+
+	public int bestFit(long size) {
+		examined = 0;
+		int b = leftmost(lowerBound(size));
+		return b == NONE ? NONE : tree[leaves + b];
+	}
+
+	public int worstFit(long size) {
+		examined = 0;
+		int b = rightmost();
+		if(b == NONE || sizes[b] < size){
+			return NONE;
+		}
+		return tree[leaves + b];
+	}
+
+	/**
+	 * Looks up the rover in every bucket that holds the size, O(k log n)
+	 */
+	public int nextFit(long size, int rover) {
+		int next = EMPTY;
+		int read = 0;
+		for (int b = lowerBound(size); b < sizes.length; b++) {
+			Integer candidate = buckets.get(b).ceiling(rover);
+			read++;
+			if(candidate != null && candidate < next){
+				next = candidate;
+			}
+		}
+		if(next != EMPTY){
+			examined = read;
+			return next;
+		}
+		//Nothing at or above the rover, wrap around to the bottom
+		next = firstFit(size);
+		examined += read;
+		return next;
+	}
+
+	/**
+	 * @param size
+	 * @return index of the first bucket whose size is at least the given size, k if none
+	 */
+	private int lowerBound(long size) {
+		int b = Arrays.binarySearch(sizes, size);
+		return b >= 0 ? b : -b - 1;
+	}
+
+	/**
+	 * @param from
+	 * @return the first non empty bucket at or after from, or NONE
+	 */
+	private int leftmost(int from) {
+		if(from >= sizes.length){
+			return NONE;
+		}
+		int node = leaves + from;
+		//Climb until a right sibling has a free partition
+		while(tree[node] == EMPTY){
+			examined++;
+			while(node > 1 && (node & 1) == 1){
+				node /= 2;
+			}
+			if(node == 1){
+				return NONE;
+			}
+			node++;
+		}
+		//Then go down its leftmost non empty path
+		while(node < leaves){
+			node = tree[2 * node] != EMPTY ? 2 * node : 2 * node + 1;
+			examined++;
+		}
+		examined++;
+		return node - leaves;
+	}
+
+	/**
+	 * @return the last non empty bucket, or NONE
+	 */
+	private int rightmost() {
+		if(tree[1] == EMPTY){
+			return NONE;
+		}
+		int node = 1;
+		while(node < leaves){
+			node = tree[2 * node + 1] != EMPTY ? 2 * node + 1 : 2 * node;
+			examined++;
+		}
+		examined++;
+		return node - leaves;
+	}
+
+	/**
+	 * Refreshes the bucket's leaf and its path to the root
+	 * @param b
+	 */
+	private void update(int b) {
+		TreeSet<Integer> bucket = buckets.get(b);
+		int node = leaves + b;
+		tree[node] = bucket.isEmpty() ? EMPTY : bucket.first();
+		for(node /= 2; node >= 1; node /= 2){
+			tree[node] = Math.min(tree[2 * node], tree[2 * node + 1]);
+		}
+	}
+}
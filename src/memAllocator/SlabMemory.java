@@ -0,0 +1,373 @@
+package memAllocator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Slab front end for dynamic memory.
+ * Small jobs are rounded up to a power of two size class and placed in slabs,
+ * large blocks taken from a DynamicMemory and cut into equal slots.
+ * Placing or freeing a small job pops or pushes a slot number, no splitting or joining.
+ * A slab that becomes empty goes back to the dynamic memory, and large jobs go there directly.
+ */
+public class SlabMemory implements MemoryModule{
+
+	//Attached to jobs placed directly in the dynamic memory instead of a slot
+	private static final int DIRECT = Integer.MAX_VALUE;
+
+	private DynamicMemory backing;
+	private long slabSize;
+	//Slot size of each class, 1, 2, 4... up to the largest small job
+	private long[] classSizes;
+	//Slabs of each class that still have a free slot
+	private List<LinkedHashSet<Slab>> partialSlabs;
+	private int[] classSlabs;
+	private int[] classUsed;
+	private HashMap<Integer, Slab> slabOf;
+	//Every job in memory, with its slot number or DIRECT
+	private LiveJobSet liveJobs;
+	private WaitQueue waitJobs;
+	//Size of the jobs in slots
+	private long smallUsed;
+	private int slabCount;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
+
+	/**
+	 * One block of the dynamic memory cut into slots of a single size class
+	 */
+	private static class Slab {
+		//Id the block is held under in the dynamic memory
+		private final int blockId;
+		private final int sizeClass;
+		private final Job[] slots;
+		//Stack of free slot numbers
+		private final int[] freeSlots;
+		private int freeCount;
+
+		private Slab(int blockId, int sizeClass, int slotCount) {
+			this.blockId = blockId;
+			this.sizeClass = sizeClass;
+			slots = new Job[slotCount];
+			freeSlots = new int[slotCount];
+			//Lowest slot on top of the stack
+			for (int i = 0; i < slotCount; i++) {
+				freeSlots[i] = slotCount - 1 - i;
+			}
+			freeCount = slotCount;
+		}
+	}
+
+	/**
+	 * Uses slabs of about a sixteenth of the memory holding at least eight slots each
+	 * @param size
+	 * @param memAddress
+	 */
+	public SlabMemory(long size, long memAddress) {
+		this(size, memAddress, Long.highestOneBit(Math.max(8, size / 16)));
+	}
+
+	/**
+	 * @param size
+	 * @param memAddress
+	 * @param slabSize size of the blocks taken from the dynamic memory, the largest small job is an eighth of it
+	 */
+	public SlabMemory(long size, long memAddress, long slabSize) {
+		backing = new DynamicMemory(size, memAddress);
+		backing.setVerbose(false);
+		this.slabSize = slabSize;
+		int classCount = 64 - Long.numberOfLeadingZeros(Math.max(1, slabSize / 8));
+		classSizes = new long[classCount];
+		partialSlabs = new ArrayList<LinkedHashSet<Slab>>();
+		for (int i = 0; i < classCount; i++) {
+			classSizes[i] = 1L << i;
+			partialSlabs.add(new LinkedHashSet<Slab>());
+		}
+		classSlabs = new int[classCount];
+		classUsed = new int[classCount];
+		slabOf = new HashMap<Integer, Slab>();
+		liveJobs = new LiveJobSet();
+		waitJobs = new WaitQueue();
+	}
+
+	/**
+	 * @param size
+	 * @return the smallest class that holds the size, or -1 for a large job
+	 */
+	private int sizeClass(long size) {
+		int sizeClass = 64 - Long.numberOfLeadingZeros(size - 1);
+		return sizeClass < classSizes.length ? sizeClass : -1;
+	}
+
+	public void printAll(){
+		backing.printFreeList();
+		backing.printSnapShot();
+		printSlabs();
+		printWaitQueue();
+	}
+
+	/**
+	 * Print the slabs and used slots of every size class
+	 */
+	public void printSlabs(){
+		System.out.println();
+		String leftAlignFormat = "| %-13d | %-13d | %-13d |%n";
+		System.out.println("+Slab Size Classes");
+		System.out.format("+---------------+---------------+---------------+%n");
+		System.out.format("| Slot Size     | Slabs         | Used Slots    |%n");
+		System.out.format("+---------------+---------------+---------------+%n");
+		for (int i = 0; i < classSizes.length; i++) {
+			if(classSlabs[i] > 0){
+				System.out.format(leftAlignFormat, classSizes[i], classSlabs[i], classUsed[i]);
+			}
+		}
+		System.out.format("+---------------+---------------+---------------+%n");
+	}
+
+	/**
+	 * Slabs show up as the blocks holding them
+	 */
+	public MemorySnapshot snapshot(){
+		return new MemorySnapshot.Builder("Slab Partition", getTotalSize()).add(backing.snapshot()).waiting(waitJobs).build();
+	}
+
+	/**
+	 * Print out the queue of waiting jobs
+	 */
+	public void printWaitQueue(){
+		if(waitJobs.isEmpty()){
+			System.out.println();
+			System.out.println("No jobs currently waiting.");
+		} else {
+			System.out.println();
+			String leftAlignFormat = "| %-20s |%n";
+			System.out.println("+Job Waiting Queue");
+			System.out.format("+----------------------+%n");
+			System.out.format("| Job                  |%n");
+			System.out.format("+----------------------+%n");
+			for(Job j : waitJobs){
+				System.out.format(leftAlignFormat, "Job " + j.getId() + " - " + (j.getSize()) + "k");
+			}
+			System.out.format("+----------------------+%n");
+		}
+	}
+
+	/**
+	 * Small jobs go to a slot of their class, large jobs and slabs are placed with the given algorithm
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		if(verbose){
+			System.out.println("\n***ADD JOB " + newJob.getId());
+		}
+		if(!place(algorithmID, newJob)){
+			waitJobs.add(newJob);
+			waits++;
+		}
+	}
+
+	/**
+	 * @param algo
+	 * @param newJob
+	 * @return if the job got memory
+	 */
+	private boolean place(Algorithm algo, Job newJob) {
+		int sizeClass = sizeClass(newJob.getSize());
+		if(sizeClass >= 0){
+			Slab slab = partialSlab(algo, sizeClass);
+			if(slab != null){
+				putInSlot(slab, newJob);
+				//Waiting jobs of the class can share a newly cut slab
+				fillSlab(slab);
+				return true;
+			}
+			//No slab can be cut, the small job takes the general path
+		}
+		if(backing.getLargestFreeBlock() < newJob.getSize()){
+			return false;
+		}
+		backing.addJob(algo, newJob);
+		liveJobs.add(newJob.getId(), DIRECT);
+		allocations++;
+		return true;
+	}
+
+	/**
+	 * @param algo
+	 * @param sizeClass
+	 * @return a slab of the class with a free slot, cutting a new one if needed, or null if there is no room
+	 */
+	private Slab partialSlab(Algorithm algo, int sizeClass) {
+		LinkedHashSet<Slab> partial = partialSlabs.get(sizeClass);
+		if(!partial.isEmpty()){
+			return partial.iterator().next();
+		}
+		int blockId = backing.allocateBlock(algo, slabSize);
+		if(blockId == -1){
+			return null;
+		}
+		Slab slab = new Slab(blockId, sizeClass, (int) (slabSize / classSizes[sizeClass]));
+		partial.add(slab);
+		classSlabs[sizeClass]++;
+		slabCount++;
+		return slab;
+	}
+
+	/**
+	 * Pops a free slot of the slab for the job
+	 * @param slab
+	 * @param newJob
+	 */
+	private void putInSlot(Slab slab, Job newJob) {
+		int slot = slab.freeSlots[--slab.freeCount];
+		slab.slots[slot] = newJob;
+		if(slab.freeCount == 0){
+			partialSlabs.get(slab.sizeClass).remove(slab);
+		}
+		slabOf.put(newJob.getId(), slab);
+		liveJobs.add(newJob.getId(), slot);
+		classUsed[slab.sizeClass]++;
+		smallUsed += newJob.getSize();
+		allocations++;
+		newJob.placed();
+	}
+
+	/**
+	 * Pushes the slot back on the slab's free stack, and hands the slab back once it is empty
+	 * @param slab
+	 * @param slot
+	 */
+	private void freeSlot(Slab slab, int slot) {
+		smallUsed -= slab.slots[slot].getSize();
+		classUsed[slab.sizeClass]--;
+		slab.slots[slot] = null;
+		slab.freeSlots[slab.freeCount++] = slot;
+		if(slab.freeCount == 1){
+			partialSlabs.get(slab.sizeClass).add(slab);
+		}
+		fillSlab(slab);
+		if(slab.freeCount == slab.slots.length){
+			partialSlabs.get(slab.sizeClass).remove(slab);
+			classSlabs[slab.sizeClass]--;
+			slabCount--;
+			backing.removeJob(slab.blockId);
+		}
+	}
+
+	/**
+	 * Gives the free slots of the slab to waiting jobs of its class
+	 * @param slab
+	 */
+	private void fillSlab(Slab slab) {
+		if(waitJobs.isEmpty()){
+			return;
+		}
+		long slotSize = classSizes[slab.sizeClass];
+		long minSize = slab.sizeClass == 0 ? 0 : slotSize / 2 + 1;
+		Job j;
+		while(slab.freeCount > 0 && (j = waitJobs.pollFloor(slotSize, minSize)) != null){
+			putInSlot(slab, j);
+		}
+	}
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = liveJobs.randomId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Simulates a job completing
+	 * Frees its slot or its dynamic memory partition, then admits the waiting jobs that now fit
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		if(verbose){
+			System.out.println("\n***REMOVE JOB " + id);
+		}
+		int slot = liveJobs.remove(id);
+		if(slot == -1){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+			}
+			return false;
+		}
+		if(slot == DIRECT){
+			backing.removeJob(id);
+		}
+		else {
+			freeSlot(slabOf.remove(id), slot);
+		}
+		checkWaitQueue();
+		return true;
+	}
+
+	/**
+	 * called after memory is freed
+	 * Every waiting job no larger than the largest free block can be placed, using First Fit
+	 */
+	private void checkWaitQueue() {
+		Job j;
+		while((j = waitJobs.pollFloor(backing.getLargestFreeBlock())) != null){
+			place(Algorithm.FIRST_FIT, j);
+		}
+	}
+
+	public boolean isEmpty(){
+		return liveJobs.isEmpty();
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return backing.getTotalSize();
+	}
+
+	/**
+	 * @return memory taken by the jobs themselves, slabs only count their used slots
+	 */
+	public long getUsedSize() {
+		return backing.getUsedSize() - slabCount * slabSize + smallUsed;
+	}
+
+	/**
+	 * @return free memory outside the largest free block, including the unused room inside slabs
+	 */
+	public long getFragmentation() {
+		return backing.getFragmentation() + slabCount * slabSize - smallUsed;
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+}
@@ -0,0 +1,241 @@
+package memAllocator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Free fixed partitions as one bitmap per partition size, for pools of many equally sized partitions.
+ * The partitions of a size are slots numbered in address order and a set bit marks a free slot,
+ * so claiming and freeing only flip bits and nothing is allocated.
+ * A summary word per 64 words marks the words that still have a free slot,
+ * so the next free slot is found with a couple of numberOfTrailingZeros calls even at millions of slots.
+ */
+class SlotBitmaps implements FreePartitions {
+
+	//Distinct partition sizes, ascending, one group of slots each
+	private long[] sizes;
+	//Group and slot of every partition
+	private int[] groupOf;
+	private int[] slotOf;
+	//Partition in each slot of each group
+	private int[][] members;
+	private long[][] words;
+	private long[][] summary;
+	private int[] freeSlots;
+	//Lowest free slot of each group, or NONE
+	private int[] lowestFree;
+	private long largestFree;
+	private int count;
+	//Groups read by the last search
+	private int examined;
+
+	/**
+	 * Every partition starts out claimed
+	 * @param partitions all partitions in address order
+	 * @param partitionSizes every size a partition can have, ascending
+	 */
+	SlotBitmaps(List<Partition> partitions, long[] partitionSizes) {
+		sizes = partitionSizes;
+		int k = sizes.length;
+		int n = partitions.size();
+		groupOf = new int[n];
+		slotOf = new int[n];
+		int[] groupSize = new int[k];
+		for (int i = 0; i < n; i++) {
+			int g = Arrays.binarySearch(sizes, partitions.get(i).getSize());
+			groupOf[i] = g;
+			slotOf[i] = groupSize[g]++;
+		}
+		members = new int[k][];
+		words = new long[k][];
+		summary = new long[k][];
+		for (int g = 0; g < k; g++) {
+			members[g] = new int[groupSize[g]];
+			words[g] = new long[(groupSize[g] + 63) >>> 6];
+			summary[g] = new long[(words[g].length + 63) >>> 6];
+		}
+		for (int i = 0; i < n; i++) {
+			members[groupOf[i]][slotOf[i]] = i;
+		}
+		freeSlots = new int[k];
+		lowestFree = new int[k];
+		Arrays.fill(lowestFree, NONE);
+	}
+
+	/**
+	 * @param partitions
+	 * @param k number of distinct partition sizes
+	 * @return if the pool has at least a word's worth of partitions per size on average
+	 */
+	static boolean suits(int partitions, int k) {
+		return partitions >= 64L * k;
+	}
+
+	public void add(int index) {
+		int g = groupOf[index];
+		int s = slotOf[index];
+		int w = s >>> 6;
+		words[g][w] |= 1L << s;
+		summary[g][w >>> 6] |= 1L << w;
+		freeSlots[g]++;
+		count++;
+		if(lowestFree[g] == NONE || s < lowestFree[g]){
+			lowestFree[g] = s;
+		}
+		if(sizes[g] > largestFree){
+			largestFree = sizes[g];
+		}
+	}
+
+	public void remove(int index) {
+		int g = groupOf[index];
+		int s = slotOf[index];
+		int w = s >>> 6;
+		words[g][w] &= ~(1L << s);
+		if(words[g][w] == 0){
+			summary[g][w >>> 6] &= ~(1L << w);
+		}
+		freeSlots[g]--;
+		count--;
+		if(s == lowestFree[g]){
+			lowestFree[g] = nextFree(g, s + 1);
+		}
+		//Only the last free slot of the largest size changes the largest free partition
+		if(freeSlots[g] == 0 && sizes[g] == largestFree){
+			int last = lastGroupWithFree(0);
+			largestFree = last == NONE ? 0 : sizes[last];
+		}
+	}
+
+	/**
+	 * @param g
+	 * @param from
+	 * @return the first free slot of the group at or after from, or NONE
+	 */
+	private int nextFree(int g, int from) {
+		long[] bits = words[g];
+		int w = from >>> 6;
+		if(w >= bits.length){
+			return NONE;
+		}
+		long word = bits[w] & (-1L << from);
+		if(word != 0){
+			return (w << 6) + Long.numberOfTrailingZeros(word);
+		}
+		//Find the next word with a free slot through the summary
+		long[] marks = summary[g];
+		w++;
+		int m = w >>> 6;
+		if(m >= marks.length){
+			return NONE;
+		}
+		long mark = marks[m] & (-1L << w);
+		while(mark == 0){
+			if(++m == marks.length){
+				return NONE;
+			}
+			mark = marks[m];
+		}
+		w = (m << 6) + Long.numberOfTrailingZeros(mark);
+		return (w << 6) + Long.numberOfTrailingZeros(bits[w]);
+	}
+
+	/**
+	 * @param from
+	 * @return the first group at or after from with a free slot, or NONE
+	 */
+	private int firstGroupWithFree(int from) {
+		for (int g = from; g < sizes.length; g++) {
+			examined++;
+			if(freeSlots[g] > 0){
+				return g;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @param from
+	 * @return the last group at or after from with a free slot, or NONE
+	 */
+	private int lastGroupWithFree(int from) {
+		for (int g = sizes.length - 1; g >= from; g--) {
+			examined++;
+			if(freeSlots[g] > 0){
+				return g;
+			}
+		}
+		return NONE;
+	}
+
+	private int lowerBound(long size) {
+		int g = Arrays.binarySearch(sizes, size);
+		return g >= 0 ? g : -g - 1;
+	}
+
+	public int firstFit(long size) {
+		examined = 0;
+		int first = NONE;
+		for (int g = lowerBound(size); g < sizes.length; g++) {
+			examined++;
+			if(lowestFree[g] != NONE){
+				int candidate = members[g][lowestFree[g]];
+				if(first == NONE || candidate < first){
+					first = candidate;
+				}
+			}
+		}
+		return first;
+	}
+
+	public int bestFit(long size) {
+		examined = 0;
+		int g = firstGroupWithFree(lowerBound(size));
+		return g == NONE ? NONE : members[g][lowestFree[g]];
+	}
+
+	public int worstFit(long size) {
+		examined = 0;
+		int g = lastGroupWithFree(lowerBound(size));
+		return g == NONE ? NONE : members[g][lowestFree[g]];
+	}
+
+	public int nextFit(long size, int rover) {
+		int next = NONE;
+		int groups = 0;
+		for (int g = lowerBound(size); g < sizes.length; g++) {
+			groups++;
+			if(freeSlots[g] == 0){
+				continue;
+			}
+			//First slot of the group at or above the rover
+			int from = Arrays.binarySearch(members[g], rover);
+			int s = nextFree(g, from >= 0 ? from : -from - 1);
+			if(s != NONE && (next == NONE || members[g][s] < next)){
+				next = members[g][s];
+			}
+		}
+		if(next != NONE){
+			examined = groups;
+			return next;
+		}
+		//Nothing at or above the rover, wrap around to the bottom
+		next = firstFit(size);
+		examined += groups;
+		return next;
+	}
+
+	public long largest() {
+		return largestFree;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	public int examined() {
+		return examined;
+	}
+}
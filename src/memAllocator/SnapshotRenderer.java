@@ -0,0 +1,117 @@
+package memAllocator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Renders sampled memory snapshots on a background thread.
+ * The simulation only copies the blocks into a MemorySnapshot and queues it,
+ * the text is built and written by the renderer thread, so printing no longer slows allocation.
+ * A snapshot is sampled every so many steps and, if asked, whenever a job enters the wait queue.
+ * When the renderer falls behind, new snapshots are dropped instead of blocking the simulation.
+ */
+public class SnapshotRenderer implements Closeable {
+
+	//Snapshots waiting to be rendered
+	private static final int BACKLOG = 64;
+	//Handed to the renderer thread to make it stop
+	private static final MemorySnapshot END = new MemorySnapshot.Builder("", 0).build();
+
+	private final BlockingQueue<MemorySnapshot> pending;
+	private final Writer out;
+	private final Thread renderer;
+	private final int interval;
+	private final boolean onWait;
+	private long steps;
+	private int waits;
+	private long dropped;
+	//First write error of the renderer thread, rethrown on close
+	private volatile IOException failure;
+
+	/**
+	 * @param out destination of the reports, flushed but not closed by close
+	 * @param interval sample every this many steps, 0 never samples by count
+	 * @param onWait also sample each step a job had to wait
+	 */
+	public SnapshotRenderer(Writer out, int interval, boolean onWait) {
+		this.out = out;
+		this.interval = interval;
+		this.onWait = onWait;
+		pending = new ArrayBlockingQueue<MemorySnapshot>(BACKLOG);
+		renderer = new Thread(this::render, "snapshot-renderer");
+		renderer.setDaemon(true);
+		renderer.start();
+	}
+
+	/**
+	 * Called after every add or remove, takes a snapshot when the step is sampled
+	 * @param mem
+	 */
+	public void step(MemoryModule mem) {
+		steps++;
+		boolean sampled = interval > 0 && steps % interval == 0;
+		if(onWait){
+			int nowWaits = mem.getWaits();
+			sampled |= nowWaits > waits;
+			waits = nowWaits;
+		}
+		if(sampled){
+			MemorySnapshot snapshot = mem.snapshot().atStep(steps);
+			if(!pending.offer(snapshot)){
+				dropped++;
+			}
+		}
+	}
+
+	private void render() {
+		StringBuilder text = new StringBuilder();
+		try {
+			MemorySnapshot snapshot;
+			while((snapshot = pending.take()) != END){
+				//After a failed write snapshots are only drained, so close never waits on a full queue
+				if(failure == null){
+					text.setLength(0);
+					snapshot.render(text);
+					try {
+						out.append(text);
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return snapshots skipped because the renderer was behind
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Waits for the queued snapshots to be written, then flushes the output
+	 */
+	public void close() throws IOException {
+		try {
+			pending.put(END);
+			renderer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(failure != null){
+			throw failure;
+		}
+		if(dropped > 0){
+			out.append("\n" + dropped + " snapshots dropped while the renderer was behind.\n");
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,187 @@
+package memAllocator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import memAllocator.MemoryTester.Algorithm;
+import memAllocator.Workload.SizeDistribution;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Runs a grid of headless simulations in parallel and writes one summary row per run.
+ * Every run draws from a workload seeded from the grid, so the same grid always gives the same rows.
+ *
+ * The sweep file has one parameter per line followed by its values, for example:
+ * ALGORITHMS BEST_FIT FIRST_FIT
+ * CONFIGS FixedPartitionConfig
+ * JOB_SIZES 10-80 1-40
+ * DISTRIBUTIONS UNIFORM ZIPF
+ * REMOVE_CHANCES 25 50
+ * SEEDS 1 2 3
+ * SEQUENCE_LENGTH 1000
+ * MEMORY_SIZE 200
+ */
+public class SweepRunner {
+
+	private List<Algorithm> algorithms = new ArrayList<Algorithm>();
+	private List<String> configs = new ArrayList<String>();
+	private List<int[]> jobSizes = new ArrayList<int[]>();
+	private List<SizeDistribution> distributions = new ArrayList<SizeDistribution>();
+	private List<Integer> removeChances = new ArrayList<Integer>();
+	private List<Long> seeds = new ArrayList<Long>();
+	private int sequenceLength = 1000;
+	private long memorySize = MemoryTester.MEMORY_SIZE;
+
+	/**
+	 * @param args sweep file, output file (default sweep.csv), parallelism (default all processors)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		SweepRunner sweep = new SweepRunner();
+		sweep.loadSweep(args[0]);
+		String outName = args.length > 1 ? args[1] : "sweep.csv";
+		int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		List<Future<String>> rows = pool.invokeAll(sweep.runs());
+		pool.shutdown();
+
+		PrintWriter out = new PrintWriter(outName);
+		out.println(Run.HEADER);
+		for(Future<String> row : rows){
+			out.println(row.get());
+		}
+		out.close();
+	}
+
+	/**
+	 * Reads the grid from the sweep file
+	 * @param fileName
+	 */
+	private void loadSweep(String fileName) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try {
+			String line;
+			while((line = in.readLine()) != null){
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")){
+					continue;
+				}
+				String[] tokens = line.split("\\s+");
+				String key = tokens[0].toUpperCase();
+				for (int i = 1; i < tokens.length; i++) {
+					if(key.equals("ALGORITHMS")){
+						algorithms.add(Algorithm.valueOf(tokens[i]));
+					}
+					else if(key.equals("CONFIGS")){
+						configs.add(tokens[i]);
+					}
+					else if(key.equals("JOB_SIZES")){
+						String[] range = tokens[i].split("-");
+						jobSizes.add(new int[] {Integer.parseInt(range[0]), Integer.parseInt(range[1])});
+					}
+					else if(key.equals("DISTRIBUTIONS")){
+						distributions.add(SizeDistribution.valueOf(tokens[i]));
+					}
+					else if(key.equals("REMOVE_CHANCES")){
+						removeChances.add(Integer.parseInt(tokens[i]));
+					}
+					else if(key.equals("SEEDS")){
+						seeds.add(Long.parseLong(tokens[i]));
+					}
+					else if(key.equals("SEQUENCE_LENGTH")){
+						sequenceLength = Integer.parseInt(tokens[i]);
+					}
+					else if(key.equals("MEMORY_SIZE")){
+						memorySize = Long.parseLong(tokens[i]);
+					}
+					else {
+						throw new IllegalArgumentException("Unknown sweep parameter " + tokens[0]);
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Expands the grid. Dynamic memory does not use the partition configs,
+	 * so it runs once per combination and fixed memory once per config.
+	 * @return every run of the grid in order
+	 */
+	private List<Callable<String>> runs() {
+		if(distributions.isEmpty()){
+			distributions.add(SizeDistribution.UNIFORM);
+		}
+		List<Callable<String>> runs = new ArrayList<Callable<String>>();
+		for(Algorithm algo : algorithms){
+			for(int[] range : jobSizes){
+				for(SizeDistribution distribution : distributions){
+					for(int removeChance : removeChances){
+						for(long seed : seeds){
+							if(algo.isFit()){
+								for(String config : configs){
+									runs.add(new Run(algo, config, range, distribution, removeChance, seed));
+								}
+							}
+							runs.add(new Run(algo, null, range, distribution, removeChance, seed));
+						}
+					}
+				}
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * One headless simulation of the grid, fixed memory if it has a config
+	 */
+	private class Run implements Callable<String> {
+		static final String HEADER = "memory,algorithm,config,min_job,max_job,distribution,remove_chance,seed,"
+				+ "steps,allocations,waits,avg_fragmentation,peak_utilization,millis";
+
+		private Algorithm algo;
+		private String config;
+		private int[] range;
+		private SizeDistribution distribution;
+		private int removeChance;
+		private long seed;
+
+		private Run(Algorithm algo, String config, int[] range, SizeDistribution distribution, int removeChance, long seed) {
+			this.algo = algo;
+			this.config = config;
+			this.range = range;
+			this.distribution = distribution;
+			this.removeChance = removeChance;
+			this.seed = seed;
+		}
+
+		@Override
+		public String call() {
+			long start = System.nanoTime();
+			MemoryModule mem;
+			if(config != null){
+				mem = new FixedMemory(memorySize, MemoryTester.MEMORY_ADDRESS, config);
+			}
+			else {
+				mem = MemoryTester.dynamicMemory(algo, memorySize, MemoryTester.MEMORY_ADDRESS, false);
+			}
+			Workload workload = new Workload(sequenceLength, range[0], range[1], distribution, removeChance / 100.0, seed);
+			SimulationStats stats = MemoryTester.simulateHeadless(mem, workload, algo, null);
+			long millis = (System.nanoTime() - start) / 1000000;
+			return String.format("%s,%s,%s,%d,%d,%s,%d,%d,%d,%d,%d,%.4f,%.4f,%d",
+					config != null ? "FIXED" : "DYNAMIC", algo, config != null ? config : "", range[0], range[1],
+					distribution, removeChance, seed, stats.getSteps(), stats.getAllocations(), stats.getWaits(),
+					stats.getAverageFragmentation(), stats.getPeakUtilization(), millis);
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package memAllocator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import memAllocator.Instrumentation.Probe;
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Two level segregated fit (TLSF) memory module, where every add and remove takes a bounded number of steps.
+ * Free blocks are kept in one list per size class. The first level of classes is the power of two of the size
+ * and the second splits each power of two into SL_COUNT equal ranges. A bitmap per level marks the non empty
+ * lists, so the class of a block that fits is found with a couple of bit scans instead of a search.
+ * Blocks live in primitive arrays and link to their neighbours in memory, these links play the part of
+ * boundary tags: a freed block joins its free neighbours directly, without looking up addresses.
+ */
+public class TlsfMemory implements MemoryModule{
+
+	private static final int NONE = -1;
+	//Second level classes per power of two
+	private static final int SL_BITS = 4;
+	private static final int SL_COUNT = 1 << SL_BITS;
+	private static final int FL_COUNT = 64 - SL_BITS + 1;
+
+	private long totalSize;
+	private long address;
+	private WaitQueue waitJobs;
+	//Ids of the jobs in memory, each with its block
+	private LiveJobSet liveJobs;
+
+	//Block fields, indexed by block, unused blocks are kept in spare for reuse
+	private long[] addresses;
+	private long[] sizes;
+	private Job[] jobs;
+	private boolean[] free;
+	//Neighbours in memory, NONE at either end
+	private int[] prevPhys;
+	private int[] nextPhys;
+	//Neighbours in the free list of the block's class
+	private int[] prevFree;
+	private int[] nextFree;
+	private int blocks;
+	private int[] spare;
+	private int spareCount;
+
+	//Head of the free list of each class, indexed by first level * SL_COUNT + second level
+	private int[] heads;
+	//Bit per first level with any free block, and per first level a bit per non empty second level list
+	private long flBitmap;
+	private int[] slBitmaps;
+
+	private long usedSize;
+	private int allocations;
+	private int waits;
+	private boolean verbose = true;
+
+	/**
+	 * TLSF Memory module constructor
+	 * @param size
+	 * @param memAddress
+	 */
+	public TlsfMemory(long size, long memAddress) {
+		totalSize = size;
+		this.address = memAddress;
+		waitJobs = new WaitQueue();
+		liveJobs = new LiveJobSet();
+		addresses = new long[16];
+		sizes = new long[16];
+		jobs = new Job[16];
+		free = new boolean[16];
+		prevPhys = new int[16];
+		nextPhys = new int[16];
+		prevFree = new int[16];
+		nextFree = new int[16];
+		spare = new int[16];
+		heads = new int[FL_COUNT * SL_COUNT];
+		Arrays.fill(heads, NONE);
+		slBitmaps = new int[FL_COUNT];
+		//The first block, which is the whole memory, stays block 0 since a block only ever absorbs the one after it
+		if(size > 0){
+			int first = newBlock(memAddress, size);
+			insertFree(first);
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return class of the size, first level * SL_COUNT + second level
+	 */
+	private static int classOf(long size) {
+		if(size < SL_COUNT){
+			return (int) size;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(size);
+		return ((msb - SL_BITS + 1) << SL_BITS) + (int) (size >>> (msb - SL_BITS)) - SL_COUNT;
+	}
+
+	/**
+	 * @param size
+	 * @return the lowest class whose every block can hold the size
+	 */
+	private static int fitClassOf(long size) {
+		if(size < SL_COUNT){
+			return (int) size;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(size);
+		//Round up to the start of the next second level range, unless the size already starts one
+		long rounded = size + (1L << (msb - SL_BITS)) - 1;
+		return rounded < 0 ? NONE : classOf(rounded);
+	}
+
+	/**
+	 * @param from lowest class to take
+	 * @return the first non empty class at or above it, NONE if there is none
+	 */
+	private int findClass(int from) {
+		int fl = from >>> SL_BITS;
+		int slMap = slBitmaps[fl] & (-1 << (from & (SL_COUNT - 1)));
+		if(slMap == 0){
+			long flMap = fl + 1 < 64 ? flBitmap & (-1L << (fl + 1)) : 0;
+			if(flMap == 0){
+				return NONE;
+			}
+			fl = Long.numberOfTrailingZeros(flMap);
+			slMap = slBitmaps[fl];
+		}
+		return (fl << SL_BITS) + Integer.numberOfTrailingZeros(slMap);
+	}
+
+	private int newBlock(long memAddress, long size) {
+		int b;
+		if(spareCount > 0){
+			b = spare[--spareCount];
+		}
+		else {
+			if(blocks == addresses.length){
+				int capacity = blocks * 2;
+				addresses = Arrays.copyOf(addresses, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+				jobs = Arrays.copyOf(jobs, capacity);
+				free = Arrays.copyOf(free, capacity);
+				prevPhys = Arrays.copyOf(prevPhys, capacity);
+				nextPhys = Arrays.copyOf(nextPhys, capacity);
+				prevFree = Arrays.copyOf(prevFree, capacity);
+				nextFree = Arrays.copyOf(nextFree, capacity);
+			}
+			b = blocks++;
+		}
+		addresses[b] = memAddress;
+		sizes[b] = size;
+		jobs[b] = null;
+		prevPhys[b] = NONE;
+		nextPhys[b] = NONE;
+		return b;
+	}
+
+	private void recycle(int b) {
+		jobs[b] = null;
+		if(spareCount == spare.length){
+			spare = Arrays.copyOf(spare, spareCount * 2);
+		}
+		spare[spareCount++] = b;
+	}
+
+	/**
+	 * Pushes the block on the free list of its class
+	 * @param b
+	 */
+	private void insertFree(int b) {
+		int c = classOf(sizes[b]);
+		free[b] = true;
+		prevFree[b] = NONE;
+		nextFree[b] = heads[c];
+		if(heads[c] != NONE){
+			prevFree[heads[c]] = b;
+		}
+		heads[c] = b;
+		slBitmaps[c >>> SL_BITS] |= 1 << (c & (SL_COUNT - 1));
+		flBitmap |= 1L << (c >>> SL_BITS);
+	}
+
+	/**
+	 * Unlinks the block from the free list of its class, must be called before its size changes
+	 * @param b
+	 */
+	private void removeFree(int b) {
+		int c = classOf(sizes[b]);
+		free[b] = false;
+		if(prevFree[b] != NONE){
+			nextFree[prevFree[b]] = nextFree[b];
+		}
+		else {
+			heads[c] = nextFree[b];
+		}
+		if(nextFree[b] != NONE){
+			prevFree[nextFree[b]] = prevFree[b];
+		}
+		if(heads[c] == NONE){
+			int fl = c >>> SL_BITS;
+			slBitmaps[fl] &= ~(1 << (c & (SL_COUNT - 1)));
+			if(slBitmaps[fl] == 0){
+				flBitmap &= ~(1L << fl);
+			}
+		}
+	}
+
+	public void printAll(){
+		StringBuilder text = new StringBuilder();
+		snapshot().render(text);
+		System.out.print(text);
+	}
+
+	public MemorySnapshot snapshot(){
+		MemorySnapshot.Builder snapshot = new MemorySnapshot.Builder("TLSF Partition", totalSize);
+		if(blocks > 0){
+			for (int b = 0; b != NONE; b = nextPhys[b]) {
+				snapshot.block(addresses[b], sizes[b], jobs[b]);
+			}
+		}
+		return snapshot.waiting(waitJobs).build();
+	}
+
+	/**
+	 * TLSF placement does not depend on the fit algorithm, every job goes to
+	 * the first block of the lowest class whose blocks all fit it
+	 * @param algorithmID
+	 * @param newJob
+	 */
+	public void addJob(Algorithm algorithmID, Job newJob){
+		if(verbose){
+			System.out.println("\n***ADD JOB " + newJob.getId());
+		}
+		int b = findFit(newJob.getSize());
+		if(b == NONE){
+			waitJobs.add(newJob);
+			waits++;
+			Instrumentation.record(Probe.QUEUED, waitJobs.size());
+		}
+		else {
+			allocate(b, newJob);
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return a free block that can hold the size, NONE if the bitmaps have none
+	 */
+	private int findFit(long size) {
+		//The head of the size's own class may be large enough even though not every block of the class is
+		int own = heads[classOf(size)];
+		if(own != NONE && sizes[own] >= size){
+			return own;
+		}
+		int fit = fitClassOf(size);
+		if(fit == NONE || fit >= heads.length){
+			return NONE;
+		}
+		int c = findClass(fit);
+		return c == NONE ? NONE : heads[c];
+	}
+
+	/**
+	 * Puts the job at the start of a free block and returns the rest of the block to the free lists
+	 * @param b
+	 * @param newJob
+	 * @return the free remainder of the block, NONE if the job filled it
+	 */
+	private int allocate(int b, Job newJob) {
+		removeFree(b);
+		int rest = NONE;
+		long remaining = sizes[b] - newJob.getSize();
+		if(remaining > 0){
+			sizes[b] = newJob.getSize();
+			rest = newBlock(addresses[b] + sizes[b], remaining);
+			prevPhys[rest] = b;
+			nextPhys[rest] = nextPhys[b];
+			if(nextPhys[b] != NONE){
+				prevPhys[nextPhys[b]] = rest;
+			}
+			nextPhys[b] = rest;
+			insertFree(rest);
+		}
+		jobs[b] = newJob;
+		liveJobs.add(newJob.getId(), b);
+		usedSize += sizes[b];
+		allocations++;
+		newJob.placed();
+		return rest;
+	}
+
+	/**
+	 * Simulates a random job completing
+	 * @return id of the removed job, -1 if memory is empty
+	 */
+	public int removeJob(){
+		int id = liveJobs.randomId();
+		if(id != -1){
+			removeJob(id);
+		}
+		return id;
+	}
+
+	/**
+	 * Simulates a job completing
+	 * Frees its block, joins it with its free neighbours and offers the result to the waiting jobs
+	 * @param id
+	 * @return if the job was found in memory
+	 */
+	public boolean removeJob(int id){
+		if(verbose){
+			System.out.println("\n***REMOVE JOB " + id);
+		}
+		int b = liveJobs.remove(id);
+		if(b == NONE){
+			if(verbose){
+				System.out.println("Job with ID " + id + "  was not found. No job was removed.");
+			}
+			return false;
+		}
+		usedSize -= sizes[b];
+		jobs[b] = null;
+		long start = Instrumentation.start();
+		b = deallocate(b);
+		Instrumentation.stop(Probe.DEALLOCATE, start);
+		if(!waitJobs.isEmpty()){
+			start = Instrumentation.start();
+			checkWaitQueue(b);
+			Instrumentation.stop(Probe.WAIT_CHECK, start);
+		}
+		return true;
+	}
+
+	/**
+	 * Joins the block with the free blocks right before and after it in memory, then frees it
+	 * @param b
+	 * @return the free block the memory ended up in
+	 */
+	private int deallocate(int b) {
+		int next = nextPhys[b];
+		if(next != NONE && free[next]){
+			removeFree(next);
+			sizes[b] += sizes[next];
+			nextPhys[b] = nextPhys[next];
+			if(nextPhys[next] != NONE){
+				prevPhys[nextPhys[next]] = b;
+			}
+			recycle(next);
+		}
+		int prev = prevPhys[b];
+		if(prev != NONE && free[prev]){
+			removeFree(prev);
+			sizes[prev] += sizes[b];
+			nextPhys[prev] = nextPhys[b];
+			if(nextPhys[b] != NONE){
+				prevPhys[nextPhys[b]] = prev;
+			}
+			recycle(b);
+			b = prev;
+		}
+		insertFree(b);
+		return b;
+	}
+
+	/**
+	 * called after memory is deallocated
+	 * Only the freed block is new room, so it takes the largest waiting job that fits it,
+	 * then its remainder does the same, until no waiting job fits what is left
+	 * @param b the freed block
+	 */
+	private void checkWaitQueue(int b) {
+		while(b != NONE && !waitJobs.isEmpty()){
+			Job j = waitJobs.pollFloor(sizes[b]);
+			if(j == null){
+				return;
+			}
+			b = allocate(b, j);
+		}
+	}
+
+	public boolean isEmpty(){
+		return liveJobs.isEmpty();
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Random removals draw from the given source so a run can be repeated
+	 * @param random
+	 */
+	public void setRandom(Random random) {
+		liveJobs.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public long getUsedSize() {
+		return usedSize;
+	}
+
+	/**
+	 * @return free memory outside the largest free block, as approximated by getLargestFreeBlock
+	 */
+	public long getFragmentation() {
+		return totalSize - usedSize - getLargestFreeBlock();
+	}
+
+	/**
+	 * Only the blocks of the highest non empty class can be the largest, and the head of its list is read
+	 * instead of scanning it, so this stays constant time. It is an approximation: a real free block that is
+	 * never above the largest and, being in the same class, short of it by less than a sixteenth of its size.
+	 * @return size of a free block of the highest class, 0 if memory is full
+	 */
+	public long getLargestFreeBlock() {
+		if(flBitmap == 0){
+			return 0;
+		}
+		int fl = 63 - Long.numberOfLeadingZeros(flBitmap);
+		int c = (fl << SL_BITS) + 31 - Integer.numberOfLeadingZeros(slBitmaps[fl]);
+		return sizes[heads[c]];
+	}
+
+	public int getAllocations() {
+		return allocations;
+	}
+
+	public int getWaits() {
+		return waits;
+	}
+}
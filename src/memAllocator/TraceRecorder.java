@@ -0,0 +1,128 @@
+package memAllocator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Wraps a memory module and records every add and remove into a binary trace file,
+ * so the same workload can be replayed later with TraceReplayer.
+ *
+ * The file starts with a magic number and a version, followed by fixed size records:
+ * one byte event type, the job id and the job size (0 for removes), all big endian.
+ * Fixed size records never straddle the windows the replayer maps.
+ */
+public class TraceRecorder implements MemoryModule, Closeable {
+
+	static final int MAGIC = 0x4D545243;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	static final int RECORD_SIZE = 9;
+	static final byte ADD = 0;
+	static final byte REMOVE = 1;
+
+	private MemoryModule mem;
+	private DataOutputStream out;
+
+	/**
+	 * @param mem the module that does the work
+	 * @param fileName trace file, overwritten if it exists
+	 */
+	public TraceRecorder(MemoryModule mem, String fileName) throws IOException {
+		this.mem = mem;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * @return the module being recorded
+	 */
+	MemoryModule getMemory() {
+		return mem;
+	}
+
+	private void record(byte type, int id, long size) {
+		try {
+			out.writeByte(type);
+			out.writeInt(id);
+			out.writeInt((int) size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void addJob(Algorithm algorithmID, Job newJob) {
+		record(ADD, newJob.getId(), newJob.getSize());
+		mem.addJob(algorithmID, newJob);
+	}
+
+	public int removeJob() {
+		int id = mem.removeJob();
+		//Nothing was removed from an empty memory, so there is nothing to replay
+		if(id != -1){
+			record(REMOVE, id, 0);
+		}
+		return id;
+	}
+
+	public boolean removeJob(int id) {
+		record(REMOVE, id, 0);
+		return mem.removeJob(id);
+	}
+
+	/**
+	 * Flushes the remaining records to the file
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	public void printAll() {
+		mem.printAll();
+	}
+
+	public MemorySnapshot snapshot() {
+		return mem.snapshot();
+	}
+
+	public boolean isEmpty() {
+		return mem.isEmpty();
+	}
+
+	public void setVerbose(boolean verbose) {
+		mem.setVerbose(verbose);
+	}
+
+	public void setRandom(Random random) {
+		mem.setRandom(random);
+	}
+
+	public long getTotalSize() {
+		return mem.getTotalSize();
+	}
+
+	public long getUsedSize() {
+		return mem.getUsedSize();
+	}
+
+	public long getFragmentation() {
+		return mem.getFragmentation();
+	}
+
+	public int getAllocations() {
+		return mem.getAllocations();
+	}
+
+	public int getWaits() {
+		return mem.getWaits();
+	}
+}
@@ -0,0 +1,103 @@
+package memAllocator;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+import memAllocator.MemoryTester.Algorithm;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Replays a trace written by TraceRecorder into a memory module.
+ * The file is memory mapped one window at a time, so traces larger than memory
+ * (and larger than the 2GB limit of a single mapping) stream through with a constant footprint.
+ */
+public class TraceReplayer {
+
+	//Whole records per mapped window, about 36MB
+	private static final long WINDOW_RECORDS = 1 << 22;
+
+	/**
+	 * @param args trace file, algorithm, optional fixed partition config (dynamic memory without one)
+	 */
+	public static void main(String[] args) throws IOException {
+		Algorithm algo = Algorithm.valueOf(args[1]);
+		MemoryModule mem;
+		if(args.length > 2){
+			mem = new FixedMemory(MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS, args[2]);
+		}
+		else {
+			mem = MemoryTester.dynamicMemory(algo, MemoryTester.MEMORY_SIZE, MemoryTester.MEMORY_ADDRESS);
+		}
+		replay(args[0], mem, algo).printStats();
+	}
+
+	/**
+	 * Feeds every event of the trace to the memory.
+	 * Jobs keep their recorded ids so removals find them. A removal of a job that
+	 * is still waiting under this algorithm is held until the job is placed, then done right after
+	 * the event that placed it, so the job does not stay resident for the rest of the replay.
+	 * @param fileName
+	 * @param mem
+	 * @param algo
+	 * @return the aggregated counters of the replay
+	 */
+	public static SimulationStats replay(String fileName, MemoryModule mem, Algorithm algo) throws IOException {
+		SimulationStats stats = new SimulationStats();
+		mem.setVerbose(false);
+		//Ids of jobs in the wait queue, and those of them whose removal has already been read
+		HashSet<Integer> waiting = new HashSet<Integer>();
+		HashSet<Integer> removed = new HashSet<Integer>();
+		//Removed jobs placed during the current event, freed once the memory call returns
+		ArrayDeque<Integer> due = new ArrayDeque<Integer>();
+		Consumer<Job> onPlaced = job -> {
+			job.setPlacementListener(null);
+			waiting.remove(job.getId());
+			if(removed.remove(job.getId())){
+				due.add(job.getId());
+			}
+		};
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceRecorder.HEADER_SIZE);
+			if(header.getInt() != TraceRecorder.MAGIC || header.getInt() != TraceRecorder.VERSION){
+				throw new IOException(fileName + " is not a version " + TraceRecorder.VERSION + " trace");
+			}
+			long records = (channel.size() - TraceRecorder.HEADER_SIZE) / TraceRecorder.RECORD_SIZE;
+			for (long first = 0; first < records; first += WINDOW_RECORDS) {
+				long count = Math.min(WINDOW_RECORDS, records - first);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+						TraceRecorder.HEADER_SIZE + first * TraceRecorder.RECORD_SIZE, count * TraceRecorder.RECORD_SIZE);
+				for (long i = 0; i < count; i++) {
+					byte type = window.get();
+					int id = window.getInt();
+					int size = window.getInt();
+					if(type == TraceRecorder.ADD){
+						Job job = new Job(size);
+						job.setId(id);
+						waiting.add(id);
+						job.setPlacementListener(onPlaced);
+						mem.addJob(algo, job);
+					}
+					else if(!mem.removeJob(id) && waiting.contains(id)){
+						removed.add(id);
+					}
+					//Freeing a held job can place another one
+					while(!due.isEmpty()){
+						mem.removeJob(due.poll());
+					}
+					stats.record(mem);
+				}
+			}
+		} finally {
+			file.close();
+		}
+		return stats;
+	}
+}
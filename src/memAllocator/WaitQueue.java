@@ -0,0 +1,88 @@
+package memAllocator;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * Jobs waiting for memory, indexed by job size.
+ * Each size class is first in first out, and the largest waiting job that fits
+ * a given amount of space is found with one floor lookup instead of a scan.
+ * Iterating gives the jobs in the order they arrived.
+ */
+public class WaitQueue implements Iterable<Job> {
+
+	private TreeMap<Long, ArrayDeque<Job>> sizeClasses;
+	private LinkedHashSet<Job> arrivals;
+
+	public WaitQueue() {
+		sizeClasses = new TreeMap<Long, ArrayDeque<Job>>();
+		arrivals = new LinkedHashSet<Job>();
+	}
+
+	public void add(Job j) {
+		ArrayDeque<Job> sameSize = sizeClasses.get(j.getSize());
+		if(sameSize == null){
+			sameSize = new ArrayDeque<Job>();
+			sizeClasses.put(j.getSize(), sameSize);
+		}
+		sameSize.add(j);
+		arrivals.add(j);
+	}
+
+	/**
+	 * Takes the oldest job of the largest size class that fits in the space
+	 * @param space
+	 * @return the job, or null if every waiting job is larger than the space
+	 */
+	public Job pollFloor(long space) {
+		return pollFloor(space, 0);
+	}
+
+	/**
+	 * Same as pollFloor but only takes a job of at least the given size
+	 * @param space
+	 * @param minSize
+	 * @return the job, or null if no waiting job is between minSize and the space
+	 */
+	public Job pollFloor(long space, long minSize) {
+		Entry<Long, ArrayDeque<Job>> sizeClass = sizeClasses.floorEntry(space);
+		if(sizeClass == null || sizeClass.getKey() < minSize){
+			return null;
+		}
+		Job j = sizeClass.getValue().poll();
+		if(sizeClass.getValue().isEmpty()){
+			sizeClasses.remove(sizeClass.getKey());
+		}
+		arrivals.remove(j);
+		return j;
+	}
+
+	/**
+	 * @return size of the smallest waiting job, the queue must not be empty
+	 */
+	public long smallestSize() {
+		return sizeClasses.firstKey();
+	}
+
+	public boolean isEmpty() {
+		return arrivals.isEmpty();
+	}
+
+	public int size() {
+		return arrivals.size();
+	}
+
+	/**
+	 * @return the waiting jobs in arrival order
+	 */
+	@Override
+	public Iterator<Job> iterator() {
+		return Collections.unmodifiableSet(arrivals).iterator();
+	}
+}
@@ -0,0 +1,185 @@
+package memAllocator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * @author Ryan Ceresani
+ *
+ * A seeded sequence of job requests, generated one job at a time as the simulation pulls it.
+ * Nothing is kept per job, so a sequence of any length runs in constant memory,
+ * and two workloads with the same parameters and seed give the same jobs and removals.
+ */
+public class Workload implements Iterator<Job> {
+
+	//Exponent of the Zipf distribution, 1 is the classic harmonic Zipf
+	static final double ZIPF_EXPONENT = 1.0;
+	//Spread of the log-normal distribution around its median
+	static final double LOG_NORMAL_SIGMA = 0.5;
+
+	public enum SizeDistribution {
+		//Every size between the minimum and the maximum is equally likely
+		UNIFORM,
+		//Size rank k from the minimum up is drawn with probability proportional to 1/k
+		ZIPF,
+		//Half the jobs within a tenth of the range of the minimum, half within a tenth of the maximum
+		BIMODAL,
+		//Log-normal around a median a quarter of the way up the range, redrawn if it falls outside
+		LOG_NORMAL
+	}
+
+	private long remaining;
+	private int minJobSize;
+	private int maxJobSize;
+	private SizeDistribution distribution;
+	private double removeChance;
+	private Random random;
+	//Mean time between arrivals and mean job duration, 0 leaves jobs untimed
+	private double meanInterarrival;
+	private double meanDuration;
+	private double clock;
+
+	//Constants of the Zipf rejection inversion sampler
+	private double zipfIntegralLow;
+	private double zipfIntegralHigh;
+	private double zipfCutoff;
+
+	/**
+	 * @param length number of jobs in the sequence
+	 * @param minJobSize
+	 * @param maxJobSize
+	 * @param distribution
+	 * @param removeChance probability of removing a job after each add, between 0 and 1
+	 * @param seed
+	 */
+	public Workload(long length, int minJobSize, int maxJobSize, SizeDistribution distribution, double removeChance, long seed) {
+		if(minJobSize < 1 || maxJobSize < minJobSize){
+			throw new IllegalArgumentException("Job sizes must satisfy 1 <= min <= max, got " + minJobSize + "-" + maxJobSize);
+		}
+		remaining = length;
+		this.minJobSize = minJobSize;
+		this.maxJobSize = maxJobSize;
+		this.distribution = distribution;
+		this.removeChance = removeChance;
+		random = new Random(seed);
+		if(distribution == SizeDistribution.ZIPF){
+			long ranks = (long) maxJobSize - minJobSize + 1;
+			zipfIntegralLow = zipfIntegral(1.5) - 1;
+			zipfIntegralHigh = zipfIntegral(ranks + 0.5);
+			zipfCutoff = 2 - zipfIntegralInverse(zipfIntegral(2.5) - zipfWeight(2));
+		}
+	}
+
+	/**
+	 * Gives every following job an arrival time and a duration, both exponentially distributed
+	 * so arrivals form a Poisson process and a job's remaining lifetime does not depend on its age
+	 * @param meanInterarrival
+	 * @param meanDuration
+	 */
+	public void setTiming(double meanInterarrival, double meanDuration) {
+		this.meanInterarrival = meanInterarrival;
+		this.meanDuration = meanDuration;
+	}
+
+	public boolean hasNext() {
+		return remaining > 0;
+	}
+
+	/**
+	 * @return the next job of the sequence
+	 */
+	public Job next() {
+		if(remaining <= 0){
+			throw new NoSuchElementException();
+		}
+		remaining--;
+		Job job = new Job(nextSize());
+		if(meanDuration > 0){
+			clock += exponential(meanInterarrival);
+			job.setArrival(Math.round(clock));
+			job.setDuration(Math.max(1, Math.round(exponential(meanDuration))));
+		}
+		return job;
+	}
+
+	/**
+	 * Memories draw which job to remove from here, so the whole run follows from the seed
+	 * @return the source of every draw of the workload
+	 */
+	public Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * Draws the removal after an add, in sequence order with the job sizes
+	 * @return if a job should be removed now
+	 */
+	public boolean nextRemove() {
+		return random.nextDouble() < removeChance;
+	}
+
+	private int nextSize() {
+		long range = (long) maxJobSize - minJobSize;
+		if(distribution == SizeDistribution.UNIFORM){
+			return (int) (minJobSize + nextLong(range + 1));
+		}
+		if(distribution == SizeDistribution.ZIPF){
+			return (int) (minJobSize + zipfRank() - 1);
+		}
+		if(distribution == SizeDistribution.BIMODAL){
+			long spread = range / 10 + 1;
+			return (int) (random.nextBoolean() ? minJobSize + nextLong(spread) : maxJobSize - nextLong(spread));
+		}
+		double median = minJobSize + range / 4.0;
+		double size;
+		do {
+			size = Math.round(median * Math.exp(LOG_NORMAL_SIGMA * random.nextGaussian()));
+		} while(size < minJobSize || size > maxJobSize);
+		return (int) size;
+	}
+
+	private double exponential(double mean) {
+		return -mean * Math.log(1 - random.nextDouble());
+	}
+
+	/**
+	 * @param bound
+	 * @return a uniform value from 0 up to but not including the bound
+	 */
+	private long nextLong(long bound) {
+		return (long) (random.nextDouble() * bound);
+	}
+
+	/**
+	 * Rejection inversion sampling (Hormann and Derflinger) draws a rank in constant time and memory,
+	 * however many sizes the range has
+	 * @return a rank from 1 up to the number of sizes
+	 */
+	private long zipfRank() {
+		long ranks = (long) maxJobSize - minJobSize + 1;
+		while(true){
+			double u = zipfIntegralHigh + random.nextDouble() * (zipfIntegralLow - zipfIntegralHigh);
+			double x = zipfIntegralInverse(u);
+			long k = Math.min(ranks, Math.max(1, (long) (x + 0.5)));
+			if(k - x <= zipfCutoff || u >= zipfIntegral(k + 0.5) - zipfWeight(k)){
+				return k;
+			}
+		}
+	}
+
+	private static double zipfWeight(double x) {
+		return Math.exp(-ZIPF_EXPONENT * Math.log(x));
+	}
+
+	private static double zipfIntegral(double x) {
+		double logX = Math.log(x);
+		double t = (1 - ZIPF_EXPONENT) * logX;
+		return (t == 0 ? 1 : Math.expm1(t) / t) * logX;
+	}
+
+	private static double zipfIntegralInverse(double x) {
+		double t = Math.max(-1, x * (1 - ZIPF_EXPONENT));
+		return Math.exp((t == 0 ? 1 : Math.log1p(t) / t) * x);
+	}
+}